@@ -0,0 +1,230 @@
+/* *******************************************************************************************
+ *
+ *  Sim68kBench.java
+ *
+ *  Benchmarks for Sim68k
+ *  - whole programs from in/ with scripted input
+ *  - each instruction for every DataSize and AddressMode
+ *
+ *  Run from the project folder:
+ *    javac -d out src/*.java bench/*.java
+ *    java -cp out Sim68kBench [programs|opcodes|all] [measured runs]
+ *
+ *********************************************************************************************/
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  Benchmark harness for {@link Sim68k} <br>
+ *  plain Java, so it runs with the same JDK and NO build file
+ */
+class Sim68kBench {
+    /** programs in in/ and the values to enter for their INP instructions */
+    static final Map<String, String[]> PROGRAMS = new LinkedHashMap<>();
+    static {
+        PROGRAMS.put( "arith", new String[] {"0", "0", "0", "$FF80", "$007F", "$FFFFFFFF", "$FFFE", "-5", "-5",
+                                             "$FFFF0000", "$7E", "10", "-10", "10", "-10", "$FFFF", "$FFFF", "$0007FFFF", "$2"} );
+        PROGRAMS.put( "arith-add",     new String[] {} );
+        PROGRAMS.put( "arith-addlong", new String[] {} );
+        PROGRAMS.put( "arith-auto",    new String[] {} );
+        PROGRAMS.put( "arith-brief",   new String[] {} );
+        PROGRAMS.put( "arith-div",     new String[] {"3", "3", "3", "3", "3", "3", "3", "3", "3", "3", "0", "0"} );
+        PROGRAMS.put( "arith-muldiv", new String[] {"-5", "-5", "$FFFF0000", "$7E", "10", "-10", "10", "-10",
+                                                    "$FFFF", "$FFFF", "$0007FFFF", "$2"} );
+        PROGRAMS.put( "arith-test",    new String[] {"3", "3", "3", "3", "3", "3", "3", "3", "3", "3", "0"} );
+        PROGRAMS.put( "hilow",         new String[] {"0", "7", "-10", "25", "6", "8", "7"} );
+        PROGRAMS.put( "logic",         new String[] {} );
+        PROGRAMS.put( "modes",         new String[] {"0", "0", "0", "0"} );
+        PROGRAMS.put( "shiftrot",      new String[] {} );
+        PROGRAMS.put( "shiftrot-word", new String[] {} );
+        PROGRAMS.put( "shiftrot.rev",  new String[] {} );
+    }
+
+    /** instructions with a source AND a destination operand */
+    static final int[] TWO_OPERANDS = { Sim68k.iADD, Sim68k.iSUB, Sim68k.iMULS, Sim68k.iDIVS, Sim68k.iAND, Sim68k.iOR,
+                                        Sim68k.iEOR, Sim68k.iCMP, Sim68k.iMOV, Sim68k.iEXG, Sim68k.iMOVA };
+
+    /** addressing modes that decode to a valid operand */
+    static final int[] MODES = { 0, 1, 3, 4, 6, 7 };
+
+    static final String[] MODE_NAMES = { "Dn", "An", "-", "abs", "(An)", "-", "(An)+", "-(An)" };
+
+    static final PrintStream OUT = System.out, ERR = System.err ;
+
+    static final PrintStream NOWHERE = new PrintStream( OutputStream.nullOutputStream() );
+
+    /** shared by every machine the benchmarks create */
+    static LogControl logging ;
+
+    public static void main(final String[] args) {
+        String which = args.length > 0 ? args[0] : "all" ;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 200 ;
+
+        System.setOut( NOWHERE );
+        logging = new LogControl( "OFF", "OFF" );
+        System.setOut( OUT );
+
+        if( which.equals("programs") || which.equals("all") )
+            programs( runs );
+        if( which.equals("opcodes") || which.equals("all") )
+            opcodes();
+    }
+
+    /*
+     *   PROGRAMS
+     * ========================================================================================================= */
+
+    /** run each program end to end: warm up, then time only {@link Sim68k.Processor#start()} */
+    static void programs(final int runs) {
+        OUT.printf( "%-14s %9s %10s %10s %10s %10s %12s %11s %10s%n",
+                    "program", "instr/run", "mean us", "p50 us", "p99 us", "MIPS", "bytes/run", "cycles/run", "68000 us" );
+        for( Map.Entry<String, String[]> pgm : PROGRAMS.entrySet() ) {
+            for( int i = 0; i < runs; i++ )
+                runOnce( pgm.getKey(), pgm.getValue() );
+
+            long[] nanos = new long[runs];
+            long instr = 0, bytes = 0, cycles = 0 ;
+            for( int i = 0; i < runs; i++ ) {
+                long[] r = runOnce( pgm.getKey(), pgm.getValue() );
+                nanos[i] = r[0];
+                bytes += r[1];
+                instr = r[2];
+                cycles = r[3];
+            }
+            Arrays.sort( nanos );
+            long total = 0;
+            for( long n : nanos )
+                total += n;
+            double mean = total / (double)runs ;
+            OUT.printf( "%-14s %9d %10.1f %10.1f %10.1f %10.2f %12d %11d %10.1f%n", pgm.getKey(), instr, mean / 1e3,
+                        nanos[runs / 2] / 1e3, nanos[Math.min(runs - 1, runs * 99 / 100)] / 1e3,
+                        instr * 1e3 / mean, bytes / runs, cycles, cycles * 1e6 / Sim68k.MC68000_CLOCK );
+        }
+    }
+
+    /**
+     *  Run the program on a NEW machine, as the registers keep their values after a run
+     *  @return nanoseconds, bytes allocated, instructions executed and 68000 cycles for one run of the program
+     */
+    static long[] runOnce(final String name, final String[] input) {
+        System.setOut( NOWHERE );
+        System.setErr( NOWHERE ); // e.g. arith-div reports a Division by Zero
+        try {
+            Sim68k.Processor proc = new Sim68k( logging ).boot();
+            proc.inputFolder = "in/" ;
+            if( !proc.loadProgram(name + ".68b") )
+                throw new IllegalStateException( "could NOT load " + name );
+            proc.setIO( new ScriptedIO(input) );
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            proc.start();
+            long nanos = System.nanoTime() - start ;
+            return new long[] { nanos, allocatedBytes() - bytes, proc.instructions, proc.cycles };
+        }
+        finally {
+            System.setOut( OUT );
+            System.setErr( ERR );
+        }
+    }
+
+    /** @return bytes allocated so far by this thread, or 0 if the JVM can NOT tell */
+    static long allocatedBytes() {
+        if( ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean tmx )
+            return tmx.getThreadAllocatedBytes( Thread.currentThread().getId() );
+        return 0;
+    }
+
+    /*
+     *   OPCODES
+     * ========================================================================================================= */
+
+    /** time {@link Sim68k.Controller#execInstr()} for each valid instruction, DataSize and AddressMode(s) */
+    static void opcodes() {
+        Sim68k sim = new Sim68k( logging );
+        sim.boot();
+        Sim68k.Controller ctrl = sim.new Controller();
+
+        OUT.printf( "%n%-6s %-5s %-6s %-6s %10s%n", "instr", "size", "src", "dest", "ns/op" );
+        for( int opId = Sim68k.iADD; opId <= Sim68k.iHLT; opId++ ) {
+            if( opId == Sim68k.iINP )
+                continue; // needs input
+            boolean twoOprd = false;
+            for( int id : TWO_OPERANDS )
+                twoOprd |= (id == opId) ;
+            boolean f1 = Sim68k.isFormatF1( opId );
+            for( int ds = 0; ds < 3; ds++ ) {
+                if( opId >= Sim68k.iDSR && ds > 0 )
+                    continue;
+                for( int m1 : (f1 && opId < Sim68k.iDSR ? MODES : new int[] {0}) ) {
+                    for( int m2 : (twoOprd || !f1 ? MODES : new int[] {0}) ) {
+                        int code = opcode( opId, ds, twoOprd, m1, m2 );
+                        Sim68k.DecodedInstr di = Sim68k.DecodeTable[code];
+                        if( di == null )
+                            continue;
+                        double ns = timeInstr( sim, ctrl, code, di );
+                        if( ns < 0 )
+                            continue; // the instruction reports an error for this combination
+                        OUT.printf( "%-6s %-5s %-6s %-6s %10.1f%n", sim.Mnemo[opId], di.DS.strValue(),
+                                    (f1 && opId < Sim68k.iDSR) ? MODE_NAMES[m1] : "#",
+                                    (twoOprd || !f1) ? MODE_NAMES[m2] : "-", ns );
+                    }
+                }
+            }
+        }
+    }
+
+    /** build an OpCode: R1 = 0, R2 = 1 and data = 3 for Format F2 */
+    static int opcode(final int opId, final int ds, final boolean twoOprd, final int m1, final int m2) {
+        int code = (opId << 11) | (ds << 9) | ((twoOprd ? 1 : 0) << 8) | (m2 << 1) | 1 ;
+        if( Sim68k.isFormatF1(opId) )
+            return code | (m1 << 5) ;
+        return code | (3 << 4) ;
+    }
+
+    /** put the registers back to the same values before each instruction */
+    static void reset(final Sim68k sim) {
+        sim.DR[0] = 0x00000007 ;
+        sim.DR[1] = 0x00012345 ;
+        sim.AR[0] = 0x0800 ;
+        sim.AR[1] = 0x0900 ;
+        sim.opAddr1 = 0x0A00 ;
+        sim.opAddr2 = 0x0B00 ;
+        sim.PC = 0x0100 ;
+        sim.H = false ;
+    }
+
+    /** @return average ns for each execution, OR -1 if the instruction sets the Halt bit */
+    static double timeInstr(final Sim68k sim, final Sim68k.Controller ctrl, final int code, final Sim68k.DecodedInstr di) {
+        System.setOut( NOWHERE );
+        System.setErr( NOWHERE );
+        try {
+            sim.opCode = (short)code ;
+            ctrl.setDecoded( di );
+            reset( sim );
+            ctrl.execInstr();
+            if( sim.H && di.opId != Sim68k.iHLT )
+                return -1;
+
+            final int warm = 20_000, count = 200_000 ;
+            for( int i = 0; i < warm; i++ ) {
+                reset( sim );
+                ctrl.execInstr();
+            }
+            long start = System.nanoTime();
+            for( int i = 0; i < count; i++ ) {
+                reset( sim );
+                ctrl.execInstr();
+            }
+            return (System.nanoTime() - start) / (double)count ;
+        }
+        finally {
+            System.setOut( OUT );
+            System.setErr( ERR );
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/* *******************************************************************************************
+ *
+ *  Sim68kRegression.java
+ *
+ *  Regression runner for Sim68k
+ *  - each program of in/ with a golden transcript in results/ARES/ is run with the input of the transcript
+ *  - the output of INP, DSP and DSR is compared with the transcript
+ *  - the instructions per second of each program are compared with a saved baseline
+ *
+ *  Run from the project folder:
+ *    javac -d out src/*.java bench/*.java
+ *    java -cp out Sim68kRegression [maximum drop of throughput in %] [baseline file] [measured batches]
+ *
+ *  The baseline is written when the file does NOT exist: delete it to measure a new one
+ *
+ *********************************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ *  Check correctness AND speed of {@link Sim68k} in one pass <br>
+ *  the programs run in parallel on a ForkJoinPool, each on its own machines
+ */
+class Sim68kRegression {
+    static final Path PROGRAMS = Path.of( "in" ),
+                      GOLDEN = Path.of( "results", "ARES" );
+
+    static final String GOLDEN_TYPE = ".result" ;
+
+    /** the default baseline is kept with the compiled classes, as it depends on the host */
+    static final String DEFAULT_BASELINE = "out/throughput.properties" ;
+
+    static final double DEFAULT_MAX_DROP = 30.0 ;
+
+    /** batches of runs measured for each program: the fastest is reported, as the others include GC and other programs */
+    static final int DEFAULT_RUNS = 21 ;
+
+    static final PrintStream OUT = System.out, ERR = System.err ;
+
+    static final PrintStream NOWHERE = new PrintStream( OutputStream.nullOutputStream() );
+
+    /** shared by every machine */
+    static LogControl logging ;
+
+    public static void main(final String[] args) throws Exception {
+        double maxDrop = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_MAX_DROP ;
+        Path baseline = Path.of( args.length > 1 ? args[1] : DEFAULT_BASELINE );
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUNS ;
+
+        List<String> names = new ArrayList<>();
+        try( Stream<Path> $files = Files.list(PROGRAMS) ) {
+            $files.map( p -> p.getFileName().toString() ).filter( n -> n.endsWith(".68b") ).sorted()
+                  .forEach( n -> names.add(n.substring(0, n.length() - 4)) );
+        }
+
+        Files.createDirectories( Path.of("logs") ); // for LogControl
+        System.setOut( NOWHERE );
+        System.setErr( NOWHERE ); // e.g. 'Program loaded.' and the errors reported by errors.68b
+        List<Result> results;
+        ForkJoinPool pool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+        try {
+            logging = new LogControl( "OFF", "OFF" );
+            results = pool.submit( () -> names.parallelStream().map(n -> check(n, runs)).toList() ).get();
+        }
+        finally {
+            pool.shutdown();
+            System.setOut( OUT );
+            System.setErr( ERR );
+        }
+
+        Properties base = new Properties();
+        boolean newBaseline = !Files.exists( baseline );
+        if( !newBaseline )
+            try( Reader $in = Files.newBufferedReader(baseline) ) {
+                base.load( $in );
+            }
+
+        int failed = 0;
+        OUT.printf( "%-14s %-8s %9s %12s %12s %8s%n", "program", "output", "instr/run", "instr/s", "baseline", "change" );
+        for( Result $r : results ) {
+            String $output = $r.golden == null ? "NO GOLD" : $r.diff == null ? "PASS" : "FAIL" ;
+            String $saved = base.getProperty( $r.name );
+            double $change = ($saved == null) ? 0.0 : 100.0 * ($r.perSecond - Double.parseDouble($saved)) / Double.parseDouble($saved) ;
+            boolean $slow = $saved != null && $change < -maxDrop ;
+            OUT.printf( "%-14s %-8s %9d %12.0f %12s %7.1f%%%s%n", $r.name, $output, $r.instructions, $r.perSecond,
+                        $saved == null ? "-" : String.format("%.0f", Double.parseDouble($saved)), $change, $slow ? "  SLOW" : "" );
+            if( $r.diff != null || $slow )
+                failed++ ;
+            if( newBaseline )
+                base.setProperty( $r.name, String.format("%.0f", $r.perSecond) );
+        }
+        for( Result $r : results )
+            if( $r.diff != null )
+                OUT.println( "\n" + $r.name + GOLDEN_TYPE + ":\n" + $r.diff );
+
+        if( newBaseline ) {
+            Files.createDirectories( baseline.toAbsolutePath().getParent() );
+            try( Writer $out = Files.newBufferedWriter(baseline) ) {
+                base.store( $out, "Sim68kRegression: instructions per second of each program" );
+            }
+            OUT.println( "\nbaseline written to " + baseline );
+        }
+        OUT.println( failed == 0 ? "\nALL PASSED" : "\n" + failed + " program(s) FAILED: maximum drop of throughput = " + maxDrop + "%" );
+        System.exit( failed == 0 ? 0 : 1 );
+    }
+
+    /*
+     *   ONE PROGRAM
+     * ========================================================================================================= */
+
+    /** what a program did */
+    static final class Result {
+        Result(final String name, final List<String> golden, final String diff, final long instructions, final double perSecond) {
+            this.name = name;
+            this.golden = golden;
+            this.diff = diff;
+            this.instructions = instructions;
+            this.perSecond = perSecond;
+        }
+
+        final String name ;
+        /** the normalized golden lines, OR <em>null</em> if the program has NO transcript */
+        final List<String> golden ;
+        /** the first differences, OR <em>null</em> if the output is the same as the golden transcript */
+        final String diff ;
+        final long instructions ;
+        final double perSecond ;
+    }
+
+    /** run a program once for its output, then time it */
+    static Result check(final String name, final int runs) {
+        Path $gold = GOLDEN.resolve( name + GOLDEN_TYPE );
+        List<String> $golden = null;
+        String[] $input = {};
+        if( Files.exists($gold) ) {
+            try {
+                List<String> $lines = Files.readAllLines( $gold );
+                $golden = normalize( $lines );
+                $input = input( $lines );
+            }
+            catch( IOException ioe ) {
+                return new Result( name, List.of(), "could NOT read " + $gold + ": " + ioe.getMessage(), 0, 0 );
+            }
+        }
+
+        EchoIO $io = new EchoIO( $input );
+        Sim68k.Processor $proc = load( name, $io );
+        $proc.start();
+        String $diff = null;
+        if( $golden != null )
+            $diff = diff( $golden, normalize($io.output().lines().toList()) );
+
+        long $warmUntil = System.nanoTime() + WARM_UP_NANOS ;
+        while( System.nanoTime() < $warmUntil )
+            timeBatch( name, $input );
+        long[] $nanos = new long[runs];
+        for( int i = 0; i < runs; i++ )
+            $nanos[i] = timeBatch( name, $input );
+        Arrays.sort( $nanos );
+        return new Result( name, $golden, $diff, $proc.instructions,
+                           $proc.instructions * BATCH * 1e9 / Math.max(1L, $nanos[0]) );
+    }
+
+    /** time for the JIT to compile the simulator before each program is measured */
+    static final long WARM_UP_NANOS = 1_000_000_000L ;
+
+    /** runs of a program timed together, as ONE run of most programs takes only microseconds */
+    static final int BATCH = 50 ;
+
+    /** @return nanoseconds for {@link #BATCH} runs of the program, each on a machine loaded beforehand */
+    static long timeBatch(final String name, final String[] input) {
+        Sim68k.Processor[] $procs = new Sim68k.Processor[BATCH];
+        for( int i = 0; i < BATCH; i++ )
+            $procs[i] = load( name, new EchoIO(input) );
+        long $start = System.nanoTime();
+        for( Sim68k.Processor $p : $procs )
+            $p.start();
+        return System.nanoTime() - $start;
+    }
+
+    /** @return a NEW machine with the program loaded, as the registers keep their values after a run */
+    static Sim68k.Processor load(final String name, final SimIO io) {
+        Sim68k.Processor $proc = new Sim68k( logging ).boot();
+        $proc.inputFolder = PROGRAMS.toString();
+        if( !$proc.loadProgram(name + ".68b") )
+            throw new IllegalStateException( "could NOT load " + name );
+        $proc.setIO( io );
+        return $proc;
+    }
+
+    /**
+     *  Output in memory, with each word of input echoed after its prompt like on a console
+     */
+    static final class EchoIO extends MemoryIO {
+        EchoIO(final String... input) {
+            super( input );
+        }
+
+        @Override
+        public String next() {
+            String $word = super.next();
+            println( $word );
+            return $word;
+        }
+    }
+
+    /*
+     *   TRANSCRIPTS
+     * ========================================================================================================= */
+
+    static final String PROMPT = "Enter a value" ;
+
+    /** ONLY these lines come from INP, DSP and DSR; e.g. 'Program loaded.' is NOT in every golden transcript */
+    static boolean fromProgram(final String line) {
+        return line.startsWith("[") || line.startsWith("Status Bits") || line.startsWith(PROMPT);
+    }
+
+    private static final Pattern SPACES = Pattern.compile( " {2,}" ),
+                                 BRACKETS = Pattern.compile( "\\[\\s*([^\\]]*?)\\s*\\]" ),
+                                 LEADING_ZEROS = Pattern.compile( "\\$0+(?=[0-9A-Fa-f])" );
+
+    /**
+     *  The golden transcripts were made by another simulator: <br>
+     *  'TRUE' for 'true', "[ D0 ]  =" for "[ D0 ] =", "[$0004]" for "[$4 ]" and hex values padded with zeros to their size
+     *  @return the lines from the program, in the same form for both: upper case, single spaces, NO spaces inside [],
+     *          NO leading zeros
+     */
+    static List<String> normalize(final List<String> lines) {
+        List<String> $out = new ArrayList<>();
+        for( String $line : lines ) {
+            $line = $line.strip();
+            if( !fromProgram($line) )
+                continue;
+            $line = SPACES.matcher( $line ).replaceAll( " " );
+            $line = BRACKETS.matcher( $line ).replaceAll( "[$1]" );
+            $out.add( LEADING_ZEROS.matcher($line).replaceAll("\\$").toUpperCase() );
+        }
+        return $out;
+    }
+
+    /** @return the words entered after the prompts of INP, in order */
+    static String[] input(final List<String> lines) {
+        List<String> $words = new ArrayList<>();
+        for( String $line : lines ) {
+            int $colon = $line.indexOf( ':' );
+            if( $line.startsWith(PROMPT) && $colon > 0 && !$line.substring($colon + 1).isBlank() )
+                $words.add( $line.substring($colon + 1).strip() );
+        }
+        return $words.toArray( new String[0] );
+    }
+
+    /** number of differing lines shown for a program */
+    static final int MAX_SHOWN = 10 ;
+
+    /** @return the differing lines, OR <em>null</em> if the same */
+    static String diff(final List<String> expected, final List<String> actual) {
+        StringBuilder $sb = new StringBuilder();
+        int $shown = 0;
+        for( int i = 0; i < Math.max(expected.size(), actual.size()) && $shown < MAX_SHOWN; i++ ) {
+            String $exp = i < expected.size() ? expected.get(i) : "<end>" ,
+                   $act = i < actual.size() ? actual.get(i) : "<end>" ;
+            if( $exp.equals($act) )
+                continue;
+            $sb.append( String.format("  line %d%n    expected: %s%n    actual:   %s%n", i + 1, $exp, $act) );
+            $shown++ ;
+        }
+        return $sb.length() == 0 ? null : $sb.toString();
+    }
+}
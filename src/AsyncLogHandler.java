@@ -0,0 +1,278 @@
+/* ******************************************************************************
+ *
+ * AsyncLogHandler.java
+ *
+ * Asynchronous file logging for Sim68k
+ *  - the logging thread ONLY puts each record in a bounded lock-free ring
+ *  - ONE writer thread formats the records and writes them to the file in large batches
+ *  - when the ring is full the record is waited for, dropped or sampled, as chosen
+ *
+ *  Set with -Dsim68k.log.async=false to log on the simulating thread as before,
+ *  -Dsim68k.log.overflow=BLOCK|DROP|SAMPLE and -Dsim68k.log.queue=<records>
+ *
+ ********************************************************************************/
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+
+/**
+ *  Put {@link LogRecord}s in a ring for a writer thread, which sends them to the <b>target</b> {@link Handler} <br>
+ *  The records of a batch are formatted with the {@link Formatter} of this handler and published to the target
+ *  as ONE record, so a {@link java.util.logging.FileHandler} makes ONE write and ONE flush for each batch
+ */
+class AsyncLogHandler extends Handler {
+    /** what to do with a record when the ring is full */
+    enum Overflow {
+        /** wait for the writer: NO record is lost */
+        BLOCK,
+        /** drop the record */
+        DROP,
+        /** when the ring is {@link #SAMPLE_FROM} full, keep ONE record in {@link #SAMPLE_EVERY} below WARNING; drop when full */
+        SAMPLE
+    }
+
+    /** default number of records in the ring */
+    static final int DEFAULT_CAPACITY = 8 * 1024 ;
+
+    /** records below WARNING kept while sampling: ONE in this many */
+    static final int SAMPLE_EVERY = 16 ;
+
+    /** fraction of the ring in use when sampling starts */
+    static final double SAMPLE_FROM = 0.75 ;
+
+    /** largest text published to the target in ONE record */
+    static final int MAX_CHUNK = 64 * 1024 ;
+
+    /** the writer wakes up this often when NOT called, so a few records are written together */
+    static final long LINGER_NANOS = 20_000_000L ;
+
+    /**
+     * Take over the target: its {@link Formatter} becomes the formatter of this handler
+     * @param target handler to write to, e.g. a {@link java.util.logging.FileHandler}
+     * @param capacity records in the ring; rounded up to a power of 2
+     * @param overflow what to do when the ring is full
+     */
+    AsyncLogHandler(final Handler target, final int capacity, final Overflow overflow) {
+        if( capacity <= 0 )
+            throw new IllegalArgumentException( "INVALID log queue capacity = " + capacity );
+        this.target = target;
+        this.overflow = overflow;
+        int $size = Integer.highestOneBit( capacity );
+        if( $size < capacity )
+            $size <<= 1;
+        ring = new AtomicReferenceArray<>( $size );
+        mask = $size - 1;
+        sampleFrom = (long)( $size * SAMPLE_FROM );
+        wakeAt = Math.max( 1, $size / 4 );
+
+        setFormatter( target.getFormatter() );
+        target.setFormatter( new Batch() );
+
+        writer = new Thread( this::drain, "Sim68k-log-writer" );
+        writer.setDaemon( true );
+        writer.start();
+        // the LogManager closes ONLY the handlers of registered loggers at exit
+        Runtime.getRuntime().addShutdownHook( new Thread(this::close, "Sim68k-log-close") );
+    }
+
+    /*
+     *        E N Q U E U E
+     ************************************************************************************************************ */
+
+    /**
+     * Put the record in the ring: the ONLY work done on the calling thread
+     * @param rec record to log
+     */
+    @Override
+    public void publish(final LogRecord rec) {
+        if( closed || !isLoggable(rec) )
+            return;
+        // the caller is found from the stack of the CURRENT thread, so it can NOT be left to the writer
+        rec.getSourceClassName();
+
+        boolean $important = rec.getLevel().intValue() >= Level.WARNING.intValue();
+        for( ;; ) {
+            long $tail = tail.get();
+            long $used = $tail - head;
+            if( $used >= ring.length() ) {
+                if( overflow == Overflow.BLOCK || ($important && overflow == Overflow.SAMPLE) ) {
+                    LockSupport.unpark( writer );
+                    LockSupport.parkNanos( 10_000L );
+                    continue;
+                }
+                dropped.incrementAndGet();
+                return;
+            }
+            if( overflow == Overflow.SAMPLE && $used >= sampleFrom && !$important
+                && sampled.incrementAndGet() % SAMPLE_EVERY != 0 ) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if( tail.compareAndSet($tail, $tail + 1) ) {
+                ring.set( (int)($tail & mask), rec );
+                if( sleeping && ($important || $used + 1 >= wakeAt) )
+                    LockSupport.unpark( writer );
+                return;
+            }
+        }
+    }
+
+    /** wait until EVERY record published before this call is written, then flush the target */
+    @Override
+    public void flush() {
+        long $until = tail.get();
+        while( written < $until && writer.isAlive() ) {
+            LockSupport.unpark( writer );
+            LockSupport.parkNanos( 100_000L );
+        }
+        target.flush();
+    }
+
+    /** write ALL the records in the ring, then close the target; later records are ignored */
+    @Override
+    public void close() {
+        synchronized( this ) {
+            if( closed )
+                return;
+            closed = true;
+        }
+        LockSupport.unpark( writer );
+        try {
+            writer.join();
+        }
+        catch( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /** @return records NOT logged because the ring was full OR sampled */
+    long dropped() { return dropped.get(); }
+
+    /*
+     *        W R I T E R
+     ************************************************************************************************************ */
+
+    /** run by {@link #writer} until closed AND the ring is empty */
+    private void drain() {
+        StringBuilder $text = new StringBuilder( MAX_CHUNK + 1024 );
+        long $reported = 0;
+        while( !closed || head < tail.get() ) {
+            if( head == tail.get() ) {
+                sleeping = true;
+                if( head == tail.get() && !closed )
+                    LockSupport.parkNanos( this, LINGER_NANOS );
+                sleeping = false;
+                continue;
+            }
+            Formatter $fmt = getFormatter();
+            long $end = tail.get();
+            while( head < $end ) {
+                int $slot = (int)( head & mask );
+                LogRecord $rec = ring.get( $slot );
+                if( $rec == null ) { // claimed but NOT yet stored
+                    Thread.onSpinWait();
+                    continue;
+                }
+                ring.set( $slot, null );
+                head++ ;
+                format( $fmt, $rec, $text );
+                if( $text.length() >= MAX_CHUNK )
+                    write( $text );
+            }
+            long $dropped = dropped.get();
+            if( $dropped != $reported ) {
+                LogRecord $note = new LogRecord( Level.WARNING, ($dropped - $reported) + " log record(s) DROPPED: overflow = "
+                                                                 + overflow + ", queue = " + ring.length() );
+                $note.setSourceClassName( AsyncLogHandler.class.getName() );
+                $note.setSourceMethodName( "publish" );
+                format( $fmt, $note, $text );
+                $reported = $dropped;
+            }
+            write( $text );
+            written = head;
+        }
+    }
+
+    private void format(final Formatter fmt, final LogRecord rec, final StringBuilder text) {
+        try {
+            text.append( fmt.format(rec) );
+        }
+        catch( RuntimeException re ) {
+            reportError( null, re, ErrorManager.FORMAT_FAILURE );
+        }
+    }
+
+    /** publish the text to the target as ONE record, then empty it */
+    private void write(final StringBuilder text) {
+        if( text.length() == 0 )
+            return;
+        try {
+            target.publish( new LogRecord(Level.SEVERE, text.toString()) );
+        }
+        catch( RuntimeException re ) {
+            reportError( null, re, ErrorManager.WRITE_FAILURE );
+        }
+        text.setLength( 0 );
+    }
+
+    /**
+     *  Formatter of the target: the records of a batch are ALREADY formatted <br>
+     *  the head and tail of the file come from the formatter of this handler
+     */
+    private class Batch extends Formatter {
+        @Override
+        public String format(LogRecord rec) { return rec.getMessage(); }
+
+        @Override
+        public String getHead(Handler h) { return getFormatter().getHead( h ); }
+
+        @Override
+        public String getTail(Handler h) { return getFormatter().getTail( h ); }
+    }
+
+    /*
+     *        F I E L D S
+     ************************************************************************************************************ */
+
+    private final Handler target ;
+
+    private final Overflow overflow ;
+
+    /** the records, at index = sequence number & {@link #mask}; <em>null</em> = free */
+    private final AtomicReferenceArray<LogRecord> ring ;
+
+    private final int mask ;
+
+    /** records in the ring when {@link Overflow#SAMPLE} starts */
+    private final long sampleFrom ;
+
+    /** records in the ring when a sleeping writer is woken up */
+    private final int wakeAt ;
+
+    /** sequence number of the next record to publish; claimed by the logging threads */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** sequence number of the next record to write: changed ONLY by the writer */
+    private volatile long head ;
+
+    /** records before this sequence number are written to the target */
+    private volatile long written ;
+
+    private volatile boolean sleeping, closed ;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** records below WARNING seen while sampling */
+    private final AtomicInteger sampled = new AtomicInteger();
+
+    private final Thread writer ;
+}
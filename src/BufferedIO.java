@@ -0,0 +1,44 @@
+/* ******************************************************************************
+ *
+ * BufferedIO.java
+ *
+ * Output of the simulated I/O devices, sent in batches
+ *
+ ********************************************************************************/
+
+import java.io.PrintStream;
+
+
+/**
+ *  Collect the output in batches instead of a system call for every print <br>
+ *  - by default a batch goes to {@link System#out} as it is when flushed
+ */
+abstract class BufferedIO implements SimIO {
+    /** size of a batch of output, in chars */
+    static final int BATCH_SIZE = 8 * 1024;
+
+    /** output waiting for {@link #flush()} */
+    private final StringBuilder batch = new StringBuilder(BATCH_SIZE);
+
+    @Override
+    public void print(final String text) {
+        batch.append(text);
+        if( batch.length() >= BATCH_SIZE )
+            flush();
+    }
+
+    @Override
+    public void flush() {
+        if( batch.length() == 0 )
+            return;
+        write(batch);
+        batch.setLength(0);
+    }
+
+    /** @param chars a batch of output to send to the device */
+    protected void write(final CharSequence chars) {
+        PrintStream $out = System.out;
+        $out.append(chars);
+        $out.flush();
+    }
+}
@@ -0,0 +1,385 @@
+/* ******************************************************************************
+ *
+ * ClassAssembler.java
+ *
+ * A small writer of JVM class files, for the code Sim68k generates at run time
+ *  - ONE class with final instance fields and methods of straight-line code with forward and backward jumps
+ *  - the constant pool is built as the code refers to classes, fields, methods and ints
+ *  - every jump target has the SAME locals, given ONCE per method, and an empty stack,
+ *    so ONE full frame per target makes the StackMapTable
+ *
+ *  The JDK 17 has NO public API for class files, and Sim68k carries NO library for them
+ *
+ ********************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ *  Assemble a class, then get its bytes for {@link java.lang.invoke.MethodHandles.Lookup#defineHiddenClass}
+ */
+class ClassAssembler {
+    /** Java 17 */
+    static final int VERSION = 61 ;
+
+    /** the methods of HotSpot longer than this are NEVER compiled */
+    static final int HUGE_METHOD = 8000 ;
+
+    /** the access flags AND opcodes used by Sim68k: a class that writes code implements this, to use them unqualified */
+    interface Opcodes {
+        int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020 ;
+
+        int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+            ILOAD = 0x15, ALOAD = 0x19, ISTORE = 0x36, ASTORE = 0x3a,
+            IALOAD = 0x2e, AALOAD = 0x32, SALOAD = 0x35, IASTORE = 0x4f, SASTORE = 0x56,
+            IADD = 0x60, ISUB = 0x64, IMUL = 0x68, INEG = 0x74,
+            ISHL = 0x78, ISHR = 0x7a, IUSHR = 0x7c, IAND = 0x7e, IOR = 0x80, IXOR = 0x82, I2S = 0x93,
+            IFEQ = 0x99, IFNE = 0x9a, IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, GOTO = 0xa7,
+            IRETURN = 0xac, RETURN = 0xb1,
+            GETSTATIC = 0xb2, GETFIELD = 0xb4, PUTFIELD = 0xb5,
+            INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9 ;
+    }
+
+    /** constant pool tags */
+    private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, FIELD_REF = 9, METHOD_REF = 10, IMETHOD_REF = 11,
+                             NAME_AND_TYPE = 12 ;
+
+    /**
+     * @param name internal name of the class, e.g. <em>Sim68kBlock</em>
+     * @param superName internal name of the super class
+     * @param interfaces internal names of the interfaces
+     */
+    ClassAssembler(final String name, final String superName, final String... interfaces) {
+        this.name = name ;
+        thisClass = classRef( name );
+        superClass = classRef( superName );
+        this.interfaces = new int[interfaces.length];
+        for( int i = 0; i < interfaces.length; i++ )
+            this.interfaces[i] = classRef( interfaces[i] );
+    }
+
+    private final String name ;
+    private final int thisClass, superClass ;
+    private final int[] interfaces ;
+
+    /** entries 1.., each with its tag */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream( 1024 );
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1 ;
+
+    private final ByteArrayOutputStream fields = new ByteArrayOutputStream( 256 );
+    private int fieldCount ;
+
+    private final List<Code> methods = new ArrayList<>();
+
+    /** internal name of the class */
+    String name() { return name; }
+
+    /*
+     *        C O N S T A N T   P O O L
+     ************************************************************************************************************ */
+
+    private int constant(final String key, final int tag, final int first, final int second) {
+        Integer $index = poolIndex.get( key );
+        if( $index != null )
+            return $index;
+        pool.write( tag );
+        if( tag == INTEGER ) {
+            writeInt( pool, first );
+        }
+        else {
+            writeShort( pool, first );
+            if( second >= 0 )
+                writeShort( pool, second );
+        }
+        poolIndex.put( key, poolCount );
+        return poolCount++;
+    }
+
+    private int utf8(final String text) {
+        String $key = "U" + text ;
+        Integer $index = poolIndex.get( $key );
+        if( $index != null )
+            return $index;
+        try {
+            DataOutputStream $out = new DataOutputStream( pool );
+            $out.writeByte( UTF8 );
+            $out.writeUTF( text );
+        }
+        catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        poolIndex.put( $key, poolCount );
+        return poolCount++;
+    }
+
+    private int classRef(final String internalName) {
+        return constant( "C" + internalName, CLASS, utf8(internalName), -1 );
+    }
+
+    private int nameAndType(final String member, final String desc) {
+        return constant( "N" + member + ' ' + desc, NAME_AND_TYPE, utf8(member), utf8(desc) );
+    }
+
+    private int memberRef(final int tag, final String owner, final String member, final String desc) {
+        return constant( tag + owner + '.' + member + ' ' + desc, tag, classRef(owner), nameAndType(member, desc) );
+    }
+
+    /*
+     *        F I E L D S   &   M E T H O D S
+     ************************************************************************************************************ */
+
+    /** add a field with NO attributes */
+    void field(final int access, final String member, final String desc) {
+        writeShort( fields, access );
+        writeShort( fields, utf8(member) );
+        writeShort( fields, utf8(desc) );
+        writeShort( fields, 0 );
+        fieldCount++;
+    }
+
+    /**
+     * Start a method: write its code, then call {@link Code#end}
+     * @param locals the verification type of each local at ANY jump target: "I" OR the internal name of a class
+     */
+    Code method(final int access, final String member, final String desc, final int maxStack, final String... locals) {
+        Code $code = new Code( access, member, desc, maxStack, locals );
+        methods.add( $code );
+        return $code;
+    }
+
+    /** a place in the code of a method */
+    static final class Label {
+        /** offset in the code; -1 until placed */
+        private int at = -1 ;
+        /** offsets of the jumps to this Label, for the offsets still to be written */
+        private final List<Integer> from = new ArrayList<>();
+    }
+
+    /** the code of ONE method */
+    final class Code {
+        private Code(final int access, final String member, final String desc, final int maxStack, final String[] locals) {
+            this.access = access ;
+            this.member = utf8( member );
+            this.desc = utf8( desc );
+            this.maxStack = maxStack ;
+            this.locals = new int[locals.length];
+            for( int i = 0; i < locals.length; i++ )
+                this.locals[i] = locals[i].equals("I") ? -1 : classRef( locals[i] );
+        }
+
+        private final int access, member, desc, maxStack ;
+        /** at each jump target: -1 = int, else the class */
+        private final int[] locals ;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream( 1024 );
+        private final TreeSet<Integer> targets = new TreeSet<>();
+        private final List<Label> labels = new ArrayList<>();
+        private boolean ended ;
+
+        /** number of bytes of code so far */
+        int size() { return code.size(); }
+
+        /** an instruction with NO operands */
+        Code op(final int opcode) {
+            code.write( opcode );
+            return this;
+        }
+
+        /** an instruction on a local, e.g. ILOAD */
+        Code local(final int opcode, final int slot) {
+            code.write( opcode );
+            code.write( slot );
+            return this;
+        }
+
+        /** push an int constant in the shortest way */
+        Code push(final int value) {
+            if( value >= -1 && value <= 5 )
+                code.write( Opcodes.ICONST_0 + value );
+            else if( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ) {
+                code.write( Opcodes.BIPUSH );
+                code.write( value );
+            }
+            else if( value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ) {
+                code.write( Opcodes.SIPUSH );
+                writeShort( code, value );
+            }
+            else {
+                code.write( Opcodes.LDC_W );
+                writeShort( code, constant("I" + value, INTEGER, value, -1) );
+            }
+            return this;
+        }
+
+        /** GETFIELD, PUTFIELD OR GETSTATIC */
+        Code field(final int opcode, final String owner, final String fieldName, final String fieldDesc) {
+            code.write( opcode );
+            writeShort( code, memberRef(FIELD_REF, owner, fieldName, fieldDesc) );
+            return this;
+        }
+
+        /** any INVOKE but INVOKEDYNAMIC */
+        Code invoke(final int opcode, final String owner, final String method, final String methodDesc) {
+            code.write( opcode );
+            if( opcode == Opcodes.INVOKEINTERFACE ) {
+                writeShort( code, memberRef(IMETHOD_REF, owner, method, methodDesc) );
+                code.write( argSlots(methodDesc) + 1 );
+                code.write( 0 );
+            }
+            else
+                writeShort( code, memberRef(METHOD_REF, owner, method, methodDesc) );
+            return this;
+        }
+
+        /** a NEW Label, placed later with {@link #place} */
+        Label label() {
+            Label $l = new Label();
+            labels.add( $l );
+            return $l;
+        }
+
+        /** a jump, e.g. IFEQ OR GOTO, to target */
+        Code jump(final int opcode, final Label target) {
+            target.from.add( code.size() );
+            code.write( opcode );
+            writeShort( code, 0 );
+            return this;
+        }
+
+        /** the next instruction is at l */
+        Code place(final Label l) {
+            if( l.at >= 0 )
+                throw new IllegalStateException( "Label placed twice in " + name );
+            l.at = code.size();
+            return this;
+        }
+
+        /** write the offsets of the jumps: the method is complete */
+        void end() {
+            byte[] $code = code.toByteArray();
+            targets.clear();
+            for( Label $l : labels ) {
+                if( $l.from.isEmpty() )
+                    continue;
+                if( $l.at < 0 )
+                    throw new IllegalStateException( "Label NOT placed in " + name );
+                targets.add( $l.at );
+                for( int $jump : $l.from ) {
+                    int $offset = $l.at - $jump ;
+                    $code[$jump + 1] = (byte)( $offset >> 8 );
+                    $code[$jump + 2] = (byte)$offset ;
+                }
+            }
+            code.reset();
+            code.write( $code, 0, $code.length );
+            ended = true ;
+        }
+
+        private void write(final ByteArrayOutputStream out) {
+            if( !ended )
+                throw new IllegalStateException( "Code NOT ended in " + name );
+            ByteArrayOutputStream $frames = new ByteArrayOutputStream( 16 * targets.size() + 2 );
+            writeShort( $frames, targets.size() );
+            int $last = -1 ;
+            for( int $at : targets ) {
+                $frames.write( 255 ); // full_frame
+                writeShort( $frames, $at - $last - 1 );
+                $last = $at ;
+                writeShort( $frames, locals.length );
+                for( int $type : locals ) {
+                    if( $type < 0 )
+                        $frames.write( 1 ); // Integer
+                    else {
+                        $frames.write( 7 ); // Object
+                        writeShort( $frames, $type );
+                    }
+                }
+                writeShort( $frames, 0 ); // empty stack
+            }
+
+            writeShort( out, access );
+            writeShort( out, member );
+            writeShort( out, desc );
+            writeShort( out, 1 );
+            writeShort( out, utf8("Code") );
+            boolean $hasFrames = !targets.isEmpty() ;
+            int $framesLength = $hasFrames ? 6 + $frames.size() : 0 ;
+            writeInt( out, 12 + code.size() + $framesLength );
+            writeShort( out, maxStack );
+            writeShort( out, locals.length );
+            writeInt( out, code.size() );
+            out.write( code.toByteArray(), 0, code.size() );
+            writeShort( out, 0 ); // NO exception table
+            if( $hasFrames ) {
+                writeShort( out, 1 );
+                writeShort( out, utf8("StackMapTable") );
+                writeInt( out, $frames.size() );
+                out.write( $frames.toByteArray(), 0, $frames.size() );
+            }
+            else
+                writeShort( out, 0 );
+        }
+    }
+
+    /** @return the class file */
+    byte[] toBytes() {
+        // the names of the attributes go in the pool BEFORE it is written
+        utf8( "Code" );
+        if( methods.stream().anyMatch(m -> !m.targets.isEmpty()) )
+            utf8( "StackMapTable" );
+        ByteArrayOutputStream $methods = new ByteArrayOutputStream( 4096 );
+        for( Code $m : methods )
+            $m.write( $methods );
+
+        ByteArrayOutputStream $out = new ByteArrayOutputStream( pool.size() + fields.size() + $methods.size() + 64 );
+        writeInt( $out, 0xCAFEBABE );
+        writeShort( $out, 0 );
+        writeShort( $out, VERSION );
+        writeShort( $out, poolCount );
+        $out.write( pool.toByteArray(), 0, pool.size() );
+        writeShort( $out, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER );
+        writeShort( $out, thisClass );
+        writeShort( $out, superClass );
+        writeShort( $out, interfaces.length );
+        for( int $i : interfaces )
+            writeShort( $out, $i );
+        writeShort( $out, fieldCount );
+        $out.write( fields.toByteArray(), 0, fields.size() );
+        writeShort( $out, methods.size() );
+        $out.write( $methods.toByteArray(), 0, $methods.size() );
+        writeShort( $out, 0 ); // NO class attributes
+        return $out.toByteArray();
+    }
+
+    /** @return number of local slots of the arguments of a method descriptor with NO long OR double */
+    private static int argSlots(final String methodDesc) {
+        int $n = 0 ;
+        for( int i = 1; methodDesc.charAt(i) != ')'; i++ ) {
+            char $c = methodDesc.charAt( i );
+            while( $c == '[' )
+                $c = methodDesc.charAt( ++i );
+            if( $c == 'L' )
+                i = methodDesc.indexOf( ';', i );
+            $n++;
+        }
+        return $n;
+    }
+
+    private static void writeShort(final ByteArrayOutputStream out, final int value) {
+        out.write( value >> 8 );
+        out.write( value );
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final int value) {
+        writeShort( out, value >> 16 );
+        writeShort( out, value );
+    }
+}
@@ -0,0 +1,32 @@
+/* ******************************************************************************
+ *
+ * ConsoleIO.java
+ *
+ * The I/O device of the keyboard and screen
+ *
+ ********************************************************************************/
+
+import java.util.Scanner;
+
+
+/**
+ *  Keyboard and screen <br>
+ *  - ONE {@link Scanner} for ALL the input, so input piped in is NOT lost between reads
+ */
+class ConsoleIO extends BufferedIO {
+    /** read from {@link System#in} */
+    ConsoleIO() {
+        this( new Scanner(System.in) );
+    }
+
+    /** @param input shared by ALL reads */
+    protected ConsoleIO(final Scanner input) {
+        scanner = input;
+    }
+
+    /** NOT closed here, as closing it would close {@link System#in} */
+    protected final Scanner scanner ;
+
+    @Override
+    public String next() { return scanner.next(); }
+}
@@ -0,0 +1,312 @@
+/* ******************************************************************************
+ *
+ * Debugger.java
+ *
+ * Breakpoints and watchpoints for Sim68k
+ *  - PC breakpoints in a bitmap over the address space, optionally with a condition on a register or status bit
+ *  - READ and/or WRITE watchpoints on ranges of Memory
+ *  - step, step over and run to an address
+ *
+ *  Set from the menu of Sim68k: 'help' lists the commands
+ *
+ ********************************************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ *  Decide when a program should stop, ONLY when a {@link Debugger} is attached to the machine <br>
+ *  Each instruction costs ONE bit test in {@link #breaks}; conditions are checked ONLY at an address whose bit is set
+ */
+class Debugger {
+    /**
+     * @param cpuSpace bytes of Memory the CPU can reach
+     * @param memorySize bytes of Memory of the machine
+     */
+    Debugger(final int cpuSpace, final int memorySize) {
+        this.cpuSpace = cpuSpace;
+        this.memorySize = memorySize;
+        breaks = new long[ (cpuSpace + 63) >>> 6 ];
+        watched = new long[ (memorySize + 63) >>> 6 ];
+    }
+
+    private final int cpuSpace, memorySize ;
+
+    /*
+     *        B R E A K P O I N T S
+     ************************************************************************************************************ */
+
+    /** ONE bit for each address with a breakpoint */
+    private final long[] breaks ;
+
+    /** conditions at an address; an address with a breakpoint but NO entry stops every time */
+    private final Map<Integer, List<Condition>> conditions = new HashMap<>();
+
+    /**
+     *  A test of a register or status bit, e.g. D0 = $5 OR Z != 0
+     */
+    static final class Condition {
+        /**
+         * @param register one of {@link #REGISTERS}
+         * @param op one of {@link #OPERATORS}
+         * @param value to compare with; 0 or 1 for a status bit
+         */
+        Condition(final String register, final String op, final int value) {
+            this.register = register.toUpperCase();
+            this.op = op;
+            this.value = value;
+            if( !List.of(REGISTERS).contains(this.register) || !List.of(OPERATORS).contains(op) )
+                throw new IllegalArgumentException( "INVALID condition '" + register + " " + op + " " + value + "'" );
+        }
+
+        static final String[] REGISTERS = { "D0", "D1", "A0", "A1", "C", "V", "Z", "N" };
+
+        /** signed comparisons */
+        static final String[] OPERATORS = { "=", "!=", "<", "<=", ">", ">=" };
+
+        final String register, op ;
+        final int value ;
+
+        boolean test(final Sim68k sim) {
+            if( register.length() == 1 )
+                sim.settleFlags();
+            int $reg = switch( register ) {
+                case "D0" -> sim.DR[0];
+                case "D1" -> sim.DR[1];
+                case "A0" -> sim.AR[0];
+                case "A1" -> sim.AR[1];
+                case "C"  -> sim.C ? 1 : 0;
+                case "V"  -> sim.V ? 1 : 0;
+                case "Z"  -> sim.Z ? 1 : 0;
+                default   -> sim.N ? 1 : 0;
+            };
+            return switch( op ) {
+                case "="  -> $reg == value;
+                case "!=" -> $reg != value;
+                case "<"  -> $reg < value;
+                case "<=" -> $reg <= value;
+                case ">"  -> $reg > value;
+                default   -> $reg >= value;
+            };
+        }
+
+        @Override
+        public String toString() { return register + " " + op + " " + Sim68k.intHex(value); }
+    }
+
+    /** stop EVERY time the PC reaches address */
+    void setBreak(final int address) {
+        checkAddress( address, cpuSpace );
+        breaks[address >>> 6] |= 1L << address;
+        conditions.remove( address );
+    }
+
+    /** stop when the PC reaches address AND the condition is true; ALL the conditions at an address are tried */
+    void setBreak(final int address, final Condition cond) {
+        checkAddress( address, cpuSpace );
+        if( !isBreak(address) || conditions.containsKey(address) )
+            conditions.computeIfAbsent( address, a -> new ArrayList<>() ).add( cond );
+        breaks[address >>> 6] |= 1L << address;
+    }
+
+    /** @return true if ANY breakpoint OR watchpoint is set */
+    boolean armed() {
+        if( !watches.isEmpty() )
+            return true;
+        for( long $bits : breaks )
+            if( $bits != 0 )
+                return true;
+        return false;
+    }
+
+    /** @return true if there is a breakpoint, conditional or NOT, at pc */
+    boolean isBreak(final int pc) {
+        return (pc >>> 6) < breaks.length && (breaks[pc >>> 6] & (1L << pc)) != 0 ;
+    }
+
+    /*
+     *        W A T C H P O I N T S
+     ************************************************************************************************************ */
+
+    /** ONE bit for each Memory address in ANY watchpoint */
+    private final long[] watched ;
+
+    /**
+     *  Memory addresses first to last, inclusive
+     */
+    static final class Watch {
+        Watch(final int first, final int last, final boolean read, final boolean write) {
+            this.first = first;
+            this.last = last;
+            this.read = read;
+            this.write = write;
+        }
+
+        final int first, last ;
+        final boolean read, write ;
+
+        @Override
+        public String toString() {
+            return (read ? "READ" : "") + (read && write ? "/" : "") + (write ? "WRITE" : "")
+                   + " " + Sim68k.intHex(first) + ".." + Sim68k.intHex(last);
+        }
+    }
+
+    private final List<Watch> watches = new ArrayList<>();
+
+    /** set by {@link #access} when a watchpoint is hit, so the program stops after the instruction */
+    boolean watchHit ;
+
+    void setWatch(final Watch watch) {
+        checkAddress( watch.first, memorySize );
+        checkAddress( watch.last, memorySize );
+        if( watch.last < watch.first || !(watch.read || watch.write) )
+            throw new IllegalArgumentException( "INVALID watchpoint " + watch );
+        watches.add( watch );
+        for( int i = watch.first; i <= watch.last; i++ )
+            watched[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Check an operand access of Memory against the watchpoints
+     * @param place first address
+     * @param size in bytes
+     * @param read true for a READ, false for a WRITE
+     */
+    void access(final int place, final int size, final boolean read) {
+        for( int i = place; i < place + size; i++ ) {
+            if( (i >>> 6) >= watched.length || (watched[i >>> 6] & (1L << i)) == 0 )
+                continue;
+            for( Watch $w : watches ) {
+                if( place <= $w.last && place + size > $w.first && (read ? $w.read : $w.write) ) {
+                    watchHit = true;
+                    reason = (read ? "READ" : "WRITE") + " of " + size + " byte(s) at " + Sim68k.intHex(place)
+                             + ", watchpoint " + $w;
+                    return;
+                }
+            }
+            return;
+        }
+    }
+
+    /*
+     *        S T O P P I N G
+     ************************************************************************************************************ */
+
+    /** instructions to run before the next stop; 0 = NOT stepping */
+    private int stepping ;
+
+    /** stop when the PC reaches this address; -1 = NONE */
+    private int runTo = -1 ;
+
+    /** the instruction the program stopped at runs WITHOUT checking its breakpoint again */
+    private boolean resuming ;
+
+    /** why the program stopped, OR <em>null</em> */
+    String reason ;
+
+    /** run n instructions, then stop */
+    void step(final int n) {
+        stepping = n;
+        resume();
+    }
+
+    /** stop when the PC reaches address, e.g. the instruction after a loop for 'step over' */
+    void runTo(final int address) {
+        checkAddress( address, cpuSpace );
+        runTo = address;
+        resume();
+    }
+
+    /** go on from where the program stopped */
+    void resume() {
+        resuming = true;
+        reason = null;
+        watchHit = false;
+    }
+
+    /** forget any step OR run to, e.g. when a program is started again */
+    void reset() {
+        stepping = 0;
+        runTo = -1;
+        resuming = false;
+        reason = null;
+        watchHit = false;
+    }
+
+    /**
+     * Called BEFORE each instruction
+     * @param pc address of the instruction
+     * @param sim for the conditions
+     * @return true to stop BEFORE the instruction, with the {@link #reason}
+     */
+    boolean stopBefore(final int pc, final Sim68k sim) {
+        if( resuming ) {
+            resuming = false;
+            return false;
+        }
+        if( stepping > 0 && --stepping == 0 ) {
+            reason = "step";
+            return true;
+        }
+        if( pc == runTo ) {
+            runTo = -1;
+            stepping = 0;
+            reason = "run to " + Sim68k.intHex(pc);
+            return true;
+        }
+        if( !isBreak(pc) )
+            return false;
+        List<Condition> $conds = conditions.get( pc );
+        if( $conds == null ) {
+            reason = "breakpoint";
+        }
+        else {
+            Condition $true = null;
+            for( Condition $c : $conds )
+                if( $c.test(sim) ) {
+                    $true = $c;
+                    break;
+                }
+            if( $true == null )
+                return false;
+            reason = "breakpoint when " + $true;
+        }
+        stepping = 0;
+        runTo = -1;
+        return true;
+    }
+
+    /*
+     *        L I S T I N G
+     ************************************************************************************************************ */
+
+    /** @return ALL the breakpoints and watchpoints, one per line */
+    String list() {
+        StringBuilder $sb = new StringBuilder();
+        for( int a = 0; a < cpuSpace; a++ ) {
+            if( !isBreak(a) )
+                continue;
+            $sb.append( "break " ).append( Sim68k.intHex(a) );
+            if( conditions.containsKey(a) )
+                $sb.append( " when " ).append( String.join(" OR ", conditions.get(a).stream().map(Object::toString).toList()) );
+            $sb.append( '\n' );
+        }
+        for( Watch $w : watches )
+            $sb.append( "watch " ).append( $w ).append( '\n' );
+        return $sb.length() == 0 ? "NO breakpoints or watchpoints\n" : $sb.toString();
+    }
+
+    private static void checkAddress(final int address, final int limit) {
+        if( address < 0 || address >= limit )
+            throw new IllegalArgumentException( "INVALID address " + Sim68k.intHex(address) );
+    }
+
+    /** @return the value of a word like the input of INP: '$' for hex, otherwise decimal */
+    static int parseValue(final String word) {
+        return (int)( word.charAt(0) == Sim68k.HEX_MARKER ? Long.parseLong(word.substring(1), 16) : Long.parseLong(word) );
+    }
+}
@@ -0,0 +1,34 @@
+/* ******************************************************************************
+ *
+ * FileIO.java
+ *
+ * The I/O device with input from a text file
+ *
+ ********************************************************************************/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+
+
+/**
+ *  Input from a text file, output to the console
+ */
+class FileIO extends ConsoleIO {
+    /**
+     * @param input text file with the input words
+     * @throws IOException if the file can NOT be opened
+     */
+    FileIO(final Path input) throws IOException {
+        super( new Scanner(Files.newBufferedReader(input, StandardCharsets.UTF_8)) );
+    }
+
+    /** also close the file */
+    @Override
+    public void close() {
+        flush();
+        scanner.close();
+    }
+}
@@ -0,0 +1,211 @@
+/* ******************************************************************************
+ *
+ * InputLog.java
+ *
+ * Record and replay the input of INP for Sim68k
+ *  - record each value a program reads, with its PC and instruction count
+ *  - replay a recording with NO console input, checking the program reads at the same places
+ *
+ *  Record with -Dsim68k.record=<log file>, replay with -Dsim68k.replay=<log file>
+ *  Show a recording from the project folder:
+ *    java -cp out InputLog <log file>
+ *
+ ********************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+
+/**
+ *  A recording of INP input <br>
+ *  <pre>
+ *   header:  int magic 'S68R', short version
+ *   then for each run:    byte 'S', UTF name of the program
+ *   and for each input:   byte 'I', long instructions executed before the INP, short PC, UTF value as entered
+ *  </pre>
+ */
+class InputLog {
+    /** 'S68R' */
+    static final int MAGIC = 0x53363852 ;
+
+    static final short VERSION = 1 ;
+
+    static final byte START = 'S', INPUT = 'I' ;
+
+    private InputLog() {}
+
+    /*
+     *        R E C O R D
+     ************************************************************************************************************ */
+
+    /**
+     *  Write a recording: each record is flushed, so the recording of a session that fails is complete
+     */
+    static class Recorder implements Closeable {
+        /**
+         * @param file to create or replace
+         * @throws IOException if the file can NOT be created
+         */
+        Recorder(final Path file) throws IOException {
+            out = new DataOutputStream( new BufferedOutputStream(Files.newOutputStream(file)) );
+            out.writeInt( MAGIC );
+            out.writeShort( VERSION );
+            out.flush();
+        }
+
+        private final DataOutputStream out ;
+
+        /** @param program name of the program that starts to run */
+        void start(final String program) throws IOException {
+            out.writeByte( START );
+            out.writeUTF( program );
+            out.flush();
+        }
+
+        /**
+         * @param count instructions executed before the INP
+         * @param pc of the INP
+         * @param value as entered
+         */
+        void input(final long count, final short pc, final String value) throws IOException {
+            out.writeByte( INPUT );
+            out.writeLong( count );
+            out.writeShort( pc );
+            out.writeUTF( value );
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    /*
+     *        R E P L A Y
+     ************************************************************************************************************ */
+
+    /**
+     *  Read a recording back, in order
+     */
+    static class Replay implements Closeable {
+        /**
+         * @param file a recording
+         * @throws IOException if the file can NOT be read OR is NOT a recording
+         */
+        Replay(final Path file) throws IOException {
+            name = file.toString();
+            in = new DataInputStream( new BufferedInputStream(Files.newInputStream(file)) );
+            if( in.readInt() != MAGIC || in.readShort() != VERSION ) {
+                in.close();
+                throw new IOException( name + " is NOT a recording of input" );
+            }
+        }
+
+        private final String name ;
+
+        private final DataInputStream in ;
+
+        /** type of the next record, read ahead; -1 at the end */
+        private int next = -2 ;
+
+        private int peek() throws IOException {
+            if( next == -2 )
+                next = in.read();
+            return next;
+        }
+
+        /**
+         * Go to the recording of the next run of program
+         * @throws IllegalStateException if the recording has NO more runs of program
+         */
+        void start(final String program) throws IOException {
+            while( peek() == INPUT )
+                skipInput();
+            if( peek() != START )
+                throw new IllegalStateException( "NO more runs in the recording " + name );
+            next = -2;
+            String $recorded = in.readUTF();
+            if( !$recorded.equals(program) )
+                throw new IllegalStateException( "recording " + name + " has a run of " + $recorded + ", NOT " + program );
+        }
+
+        private void skipInput() throws IOException {
+            next = -2;
+            in.readLong();
+            in.readShort();
+            in.readUTF();
+        }
+
+        /**
+         * @param count instructions executed before the INP
+         * @param pc of the INP
+         * @return the value entered at this INP
+         * @throws NoSuchElementException if the run has NO more input, like {@link ScriptedIO}
+         * @throws IllegalStateException if the program is NOT at the same place as when it was recorded
+         */
+        String input(final long count, final short pc) throws IOException {
+            if( peek() != INPUT )
+                throw new NoSuchElementException( "NO more input in the recording " + name );
+            next = -2;
+            long $count = in.readLong();
+            short $pc = in.readShort();
+            String $value = in.readUTF();
+            if( $count != count || $pc != pc )
+                throw new IllegalStateException( "replay of " + name + " has diverged: INP recorded at PC = " + $pc
+                                                 + " after " + $count + " instructions, NOT PC = " + pc + " after " + count );
+            return $value;
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    /*
+     *  MAIN
+     ********************************************************************************************* */
+
+    /** show a recording as text */
+    static void dump(final Path file, final PrintStream out) throws IOException {
+        try( DataInputStream $in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))) ) {
+            if( $in.readInt() != MAGIC || $in.readShort() != VERSION )
+                throw new IOException( file + " is NOT a recording of input" );
+            try {
+                for( ;; ) {
+                    byte $type = $in.readByte();
+                    if( $type == START )
+                        out.println( "RUN " + $in.readUTF() );
+                    else if( $type == INPUT )
+                        out.printf( "  after %-10d PC = %-6s  %s%n", $in.readLong(), Sim68k.intHex($in.readShort() & 0xFFFF),
+                                    $in.readUTF() );
+                    else
+                        throw new IOException( "BAD record type " + $type + " in " + file );
+                }
+            }
+            catch( EOFException eof ) {
+                // end of the recording
+            }
+        }
+    }
+
+    public static void main(final String[] args) {
+        if( args.length < 1 ) {
+            System.err.println( "usage: InputLog <log file>" );
+            System.exit( 2 );
+        }
+        try {
+            dump( Path.of(args[0]), System.out );
+        }
+        catch( IOException ioe ) {
+            System.err.println( "PROBLEM reading " + args[0] + ": " + ioe.getMessage() );
+            System.exit( 1 );
+        }
+    }
+}
@@ -13,6 +13,8 @@ import java.text.DateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.*;
 
 
@@ -59,7 +61,8 @@ public class LogControl {
      *        M E T H O D S
      *********************************************************************************************************** */
     /**
-     * Set up my Handler(s) and Formatter(s) <br>
+     * Set up my Handler(s) and Formatter(s), each behind an {@link AsyncLogHandler} unless <em>-Dsim68k.log.async=false</em> <br>
+     * <em>-Dsim68k.log.format=compact</em> writes {@link CompactFormatter} lines instead of XML <br>
      * <em>called by</em> {@link LogControl#LogControl(String,String)}
      * @see FileHandler
      * @see Formatter
@@ -67,10 +70,12 @@ public class LogControl {
      */
     private void setFileHandlers() {
         String baseName = LOG_SUBFOLDER + PROJECT_NAME + LOG_ROLLOVER_SPEC;
-        // xml file handler
+        boolean $compact = COMPACT_FORMAT.equalsIgnoreCase( System.getProperty("sim68k.log.format") );
+        // xml OR compact file handler
         try {
-            xmlHandler = new FileHandler( baseName + XML_LOGFILE_TYPE, LOGFILE_MAX_BYTES, MAX_NUM_LOG_FILES );
-            xmlHandler.setFormatter( new XMLFormatter() );
+            xmlHandler = new FileHandler( baseName + ($compact ? COMPACT_LOGFILE_TYPE : XML_LOGFILE_TYPE),
+                                          LOGFILE_MAX_BYTES, MAX_NUM_LOG_FILES );
+            xmlHandler.setFormatter( $compact ? new CompactFormatter() : new XMLFormatter() );
         }
         catch( Exception e ) {
             System.err.println("xmlHandler exception: " + e);
@@ -83,6 +88,21 @@ public class LogControl {
         catch( Exception e ) {
             System.err.println("textHandler exception: " + e);
         }
+        if( !Boolean.parseBoolean(System.getProperty("sim68k.log.async", "true")) )
+            return;
+        // the simulating thread ONLY queues the records: a writer thread formats and writes them
+        AsyncLogHandler.Overflow $overflow;
+        try {
+            $overflow = AsyncLogHandler.Overflow.valueOf( System.getProperty("sim68k.log.overflow", "BLOCK").toUpperCase() );
+        }
+        catch( IllegalArgumentException iae ) {
+            $overflow = AsyncLogHandler.Overflow.BLOCK;
+        }
+        int $capacity = Integer.getInteger( "sim68k.log.queue", AsyncLogHandler.DEFAULT_CAPACITY );
+        if( xmlHandler != null )
+            xmlHandler = new AsyncLogHandler( xmlHandler, $capacity, $overflow );
+        if( textHandler != null )
+            textHandler = new AsyncLogHandler( textHandler, $capacity, $overflow );
     }
 
     /**
@@ -131,39 +151,55 @@ public class LogControl {
      */
     MhsLogger getLogger() { return myLogger; }
 
+    /**
+     * A <b>new</b> anonymous {@link MhsLogger} for ONE simulator instance <br>
+     * - sends to the same handlers and follows the {@link Level} of {@link #myLogger} <br>
+     * - is NOT registered with the {@link LogManager}, so is garbage collected with its simulator
+     * @return the <b>new</b> Logger
+     * @see MhsLogger#getChildLogger(MhsLogger)
+     */
+    MhsLogger newLogger() { return MhsLogger.getChildLogger( myLogger ); }
+
+    /**
+     * A <b>new</b> Logger for a simulator with NO LogControl
+     * @return the <b>new</b> Logger, which logs NOTHING
+     * @see MhsLogger#getSilentLogger()
+     */
+    static MhsLogger newSilentLogger() { return MhsLogger.getSilentLogger(); }
+
     /**
      * @param lev {@link Level} to check
      * @return true if console logging is set to this Level
      */
-    static boolean atLevel(final Level lev) { return( consoleIntLevel == lev.intValue() ); }
+    boolean atLevel(final Level lev) { return( consoleIntLevel == lev.intValue() ); }
 
     /** @return true if console logging is set to {@link Level#SEVERE} else false */
-    static boolean atSevere() { return atLevel(Level.SEVERE); } // 1000
+    boolean atSevere() { return atLevel(Level.SEVERE); } // 1000
 
     /** @return true if console logging is set to {@link Level#WARNING} else false */
-    static boolean atWarning() { return atLevel(Level.WARNING); } // 900
+    boolean atWarning() { return atLevel(Level.WARNING); } // 900
 
     /** @return true if console logging is set to {@link Level#INFO} else false */
-    static boolean atInfo() { return atLevel(Level.INFO); } // 800
+    boolean atInfo() { return atLevel(Level.INFO); } // 800
 
     /** @return true if console logging is set to {@link Level#CONFIG} else false */
-    static boolean atConfig() { return atLevel(Level.CONFIG); } // 700
+    boolean atConfig() { return atLevel(Level.CONFIG); } // 700
 
     /**
      * @param exact true = test at Level FINE; false = test at Level FINE or below
      * @return true if console logging is set to {@link Level#FINE} (or below) else false
      */
-    static boolean atFine(Boolean exact) {
+    boolean atFine(Boolean exact) {
         if( exact )
             return atLevel(Level.FINE);
         return consoleIntLevel <= Level.FINE.intValue();
     } // 500
 
     /** @return true if console logging is set to {@link Level#FINER} else false */
-    static boolean atFiner() { return atLevel(Level.FINER); } // 400
+    boolean atFiner() { return atLevel(Level.FINER); } // 400
 
     /** @return true if console logging is set to {@link Level#FINEST} else false */
-    static boolean atFinest() { return atLevel(Level.FINEST); } // 300
+    boolean atFinest() { return atLevel(Level.FINEST); } // 300
 
     /**
      * Change the amount of information logged <br>
@@ -210,6 +246,34 @@ public class LogControl {
         return consoleLevel;
     }
 
+    /** @return {@link #consoleLevel} */
+    Level getConsoleLevel() { return consoleLevel; }
+
+    /** @return {@link #fileLevel} */
+    Level getFileLevel() { return fileLevel; }
+
+    /**
+     * Set the console {@link Level} directly, e.g. from JMX, while the simulators run
+     * @param lev NEW Level of the root handler(s)
+     */
+    synchronized void setConsoleLevel(final Level lev) {
+        consoleLevel = lev;
+        consoleIntLevel = lev.intValue();
+        for( Handler h : rootLogger.getHandlers() )
+            h.setLevel( consoleLevel );
+        rootLogger.severe( "Console log level is NOW at " + consoleLevel );
+    }
+
+    /**
+     * Set the file {@link Level} directly, e.g. from JMX, while the simulators run
+     * @param lev NEW Level of {@link #myLogger}, followed by the Logger of each simulator
+     */
+    synchronized void setFileLevel(final Level lev) {
+        fileLevel = lev;
+        myLogger.setLevel( fileLevel );
+        myLogger.severe( "File log level is NOW at " + fileLevel );
+    }
+
     //  DEBUGGING
     // //////////////////////////////////////////////
 
@@ -232,7 +296,7 @@ public class LogControl {
      * @see LogControl#loggerInfo(Logger,String)
      * @see LogManager#getLogger(String)
      */
-    static void checkLogging() {
+    void checkLogging() {
         loggerInfo( myLogger, "package" );
         loggerInfo( rootLogger, "root" );
         // check the global logger too - just in case
@@ -287,10 +351,12 @@ public class LogControl {
                     LOG_SUBFOLDER = "logs/",
                 LOG_ROLLOVER_SPEC = "_%u-%g",
                 XML_LOGFILE_TYPE  = ".xml",
-                TEXT_LOGFILE_TYPE = ".log";
+            COMPACT_LOGFILE_TYPE  = ".txt",
+                TEXT_LOGFILE_TYPE = ".log",
+                   COMPACT_FORMAT = "compact";
 
     /** @see MhsLogger */
-    private static MhsLogger myLogger;
+    private MhsLogger myLogger;
 
     /**
      * Can access the ConsoleHandler via the root Logger <br>
@@ -298,19 +364,19 @@ public class LogControl {
      * @see Logger
      * @see ConsoleHandler
      */
-    private static Logger rootLogger;
+    private Logger rootLogger;
 
-    /** @see FileHandler */
-    private static FileHandler textHandler, xmlHandler;
+    /** a {@link FileHandler}, OR an {@link AsyncLogHandler} in front of one */
+    private Handler textHandler, xmlHandler;
 
     /** current {@link Level} for file logging */
-    private static Level fileLevel;
+    private Level fileLevel;
 
     /** current {@link Level} for console logging */
-    private static Level consoleLevel;
+    private Level consoleLevel;
 
     /** integer value of {@link #consoleLevel} */
-    private static int consoleIntLevel;
+    private int consoleIntLevel;
 }
 
 /* ================================================================================================================== */
@@ -356,15 +422,43 @@ class MhsLogger extends Logger {
         return $logger;
     }
 
+    /**
+     * A <b>new</b> anonymous {@link Logger} which sends its records to the handlers of <var>parent</var>
+     * and is gated by the {@link Level} of <var>parent</var> until it gets its own
+     * @param parent the registered {@link MhsLogger}
+     * @return the <b>new</b> {@link Logger}
+     * @see Logger#setParent(Logger)
+     */
+    protected static MhsLogger getChildLogger(final MhsLogger parent) {
+        MhsLogger $logger = new MhsLogger(null, null);
+        $logger.setParent(parent);
+        $logger.levelSource = parent;
+        return $logger;
+    }
+
+    /**
+     * A <b>new</b> anonymous {@link Logger} that logs NOTHING and needs NO {@link LogControl}, handlers OR logs folder
+     * @return the <b>new</b> Logger, at {@link Level#OFF}
+     */
+    protected static MhsLogger getSilentLogger() {
+        MhsLogger $logger = new MhsLogger(null, null);
+        $logger.setUseParentHandlers(false);
+        $logger.setLevel(Level.OFF);
+        return $logger;
+    }
+
     /**
      * Prepare and send a customized {@link LogRecord} for an ERROR condition
      * @param msg the text to insert in the {@link LogRecord}
+     * @param offset frames to go up from the caller for the LINE #, e.g. 1 for the line that called the caller
      */
     protected void logError(final String msg, int offset) {
-        System.err.println( Arrays.toString(Thread.currentThread().getStackTrace()) );
-        int lineNum = Thread.currentThread().getStackTrace()[2+offset].getLineNumber();
+        if( DUMP_STACK )
+            System.err.println( Arrays.toString(Thread.currentThread().getStackTrace()) );
+        List<StackWalker.StackFrame> $frames = callers( offset + 1 );
+        int lineNum = $frames.isEmpty() ? -1 : $frames.get($frames.size() - 1).getLineNumber();
         if( (callclass == null) || (callmethod == null) ) {
-            getCallerClassAndMethodName();
+            setCaller( $frames );
         }
         LogRecord $logRec = getRecord( LogControl.ERROR_LEVEL, "LINE #" + lineNum + MhsFormatter.NLN + "ERROR: " + msg );
         sendRecord($logRec);
@@ -375,7 +469,27 @@ class MhsLogger extends Logger {
      * @param msg the text to insert in the {@link LogRecord}
      */
     protected void logError(final String msg) {
-        logError( msg, 1 );
+        logError( msg, 0 );
+    }
+
+    /**
+     * Prepare and send a {@link LogRecord} for an ERROR of the simulated program: NO stack is walked <br>
+     * the parameters of the record are the code, the PC and the operation
+     * @param code identifies the error, e.g. <var>E03</var>
+     * @param pc address of the instruction
+     * @param op name of the operation, e.g. <var>DIVS</var>; <em>null</em> if unknown
+     * @param msg description of the error
+     */
+    protected void logError(final String code, final int pc, final String op, final String msg) {
+        if( DUMP_STACK )
+            System.err.println( Arrays.toString(Thread.currentThread().getStackTrace()) );
+        final String $op = (op == null) ? strUNKNOWN : op ;
+        callclass = LogControl.PROJECT_NAME;
+        callmethod = $op;
+        LogRecord $logRec = getRecord( LogControl.ERROR_LEVEL, "ERROR " + code + ": " + msg + " at PC = " + pc
+                                                                + " for operation " + $op );
+        $logRec.setParameters( new Object[] { code, pc, $op } );
+        sendRecord($logRec);
     }
 
     /**
@@ -398,6 +512,71 @@ class MhsLogger extends Logger {
         logInit("0");
     }
 
+    /**
+     * Keep {@link #levelGate} in step with the {@link Level} of this {@link Logger}
+     * @param newLevel {@link Level} to log at
+     * @see Logger#setLevel(Level)
+     */
+    @Override
+    public void setLevel(final Level newLevel) {
+        super.setLevel(newLevel);
+        Level $eff = null;
+        for( Logger $lgr = this; $lgr != null && $eff == null; $lgr = $lgr.getParent() )
+            $eff = $lgr.getLevel();
+        levelGate = ($eff == null) ? Level.ALL.intValue() : $eff.intValue();
+        levelSource = this;
+    }
+
+    /**
+     * Cheap check to make <b>before</b> building a log message in the simulator hot path
+     * @param lev {@link Level} to check
+     * @return true if a message at this Level will be logged
+     */
+    boolean isOn(final Level lev) {
+        int $gate = levelSource.levelGate;
+        return( lev.intValue() >= $gate && $gate != OFF_VALUE );
+    }
+
+    /** @return true if {@link Level#CONFIG} messages will be logged */
+    boolean configOn() { return isOn(Level.CONFIG); }
+
+    /** @return true if {@link Level#INFO} messages will be logged */
+    boolean infoOn() { return isOn(Level.INFO); }
+
+    /** @return true if {@link Level#FINE} messages will be logged */
+    boolean fineOn() { return isOn(Level.FINE); }
+
+    /** @return true if {@link Level#FINER} messages will be logged */
+    boolean finerOn() { return isOn(Level.FINER); }
+
+    /**
+     * Parameterised message <var>name = value | hex value</var> <br>
+     * - NOTHING is built unless the Level is on
+     * @param lev {@link Level} to log at
+     * @param name of the value
+     * @param value to display in decimal and hex
+     */
+    protected void logValue(final Level lev, final String name, final int value) {
+        if( !isOn(lev) )
+            return;
+        getCallerClassAndMethodName();
+        sendRecord( getRecord(lev, name + " = " + value + " | " + Sim68k.intHex(value)) );
+    }
+
+    /**
+     * Parameterised message <var>msg value</var> <br>
+     * - NOTHING is built unless the Level is on
+     * @param lev {@link Level} to log at
+     * @param msg text in front of the value
+     * @param value to display
+     */
+    protected void log(final Level lev, final String msg, final int value) {
+        if( !isOn(lev) )
+            return;
+        getCallerClassAndMethodName();
+        sendRecord( getRecord(lev, msg + value) );
+    }
+
     /**
      * Prepare and send a {@link LogRecord} with data from {@link MhsLogger#buffer}
      * @param lev {@link Level} to log at
@@ -478,22 +657,34 @@ class MhsLogger extends Logger {
 
     /**
      * Get the name of the {@link Class} and <em>Method</em> that called
-     * @see Throwable#getStackTrace
-     * @see StackTraceElement#getClassName
-     * @see StackTraceElement#getMethodName
+     * @see #callers(int)
      */
     private void getCallerClassAndMethodName() {
-        Throwable $t = new Throwable();
-        StackTraceElement[] $elementAr = $t.getStackTrace();
-        if( $elementAr.length < 3 ) {
+        setCaller( callers(1) );
+    }
+
+    /** set {@link #callclass} and {@link #callmethod} from the first of frames */
+    private void setCaller(final List<StackWalker.StackFrame> frames) {
+        if( frames.isEmpty() ) {
             callclass = callmethod = strUNKNOWN;
         }
         else {
-            callclass = $elementAr[2].getClassName();
-            callmethod = $elementAr[2].getMethodName();
+            callclass = frames.get(0).getClassName();
+            callmethod = frames.get(0).getMethodName();
         }
     }
 
+    /**
+     * Walk ONLY as far as needed
+     * @param count frames wanted
+     * @return the first <var>count</var> frames outside this class, caller first
+     * @see StackWalker#walk
+     */
+    private static List<StackWalker.StackFrame> callers(final int count) {
+        return WALKER.walk( $s -> $s.filter( f -> !f.getClassName().equals(MhsLogger.class.getName()) )
+                                    .limit( count ).toList() );
+    }
+
     /*
      *        F I E L D S
      ************************************************************************************************************ */
@@ -511,8 +702,29 @@ class MhsLogger extends Logger {
      */
     private final StringBuilder buffer = new StringBuilder(1024);
 
+    /**
+     * Integer value of the current {@link Level} of this {@link Logger} <br>
+     * - checked by {@link #isOn} so disabled messages cost only a compare <br>
+     * - NOT static: a silent Logger at {@link Level#OFF} (e.g. {@link Sim68kEngine}) and the Logger of a
+     *   {@link LogControl} can be used in the same JVM, and ONE gate for all of them would be wrong for one side;
+     *   child Loggers share the gate of their parent through {@link #levelSource}
+     */
+    private volatile int levelGate = Level.ALL.intValue();
+
+    /** {@link MhsLogger} with the {@link #levelGate} to use: <em>this</em>, OR the parent of a child Logger */
+    private MhsLogger levelSource = this;
+
+    /** integer value of {@link Level#OFF} */
+    private static final int OFF_VALUE = Level.OFF.intValue();
+
     /** default if cannot get method or class name */
     static final String strUNKNOWN = "unknown";
+
+    /** finds the callers, with line numbers */
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    /** print the whole stack on System.err for each ERROR: set with <em>-Dsim68k.log.stack=true</em> */
+    static final boolean DUMP_STACK = Boolean.getBoolean( "sim68k.log.stack" );
 }
 
 /* ================================================================================================================== */
@@ -526,7 +738,7 @@ class MhsFormatter extends Formatter {
     /** Instructions on how to format a {@link LogRecord} */
     @Override
     public String format(LogRecord rec) {
-        return( rec.getLevel() + REC + (++count) + NLN + rec.getSourceClassName() + SPC
+        return( rec.getLevel() + REC + count.incrementAndGet() + NLN + rec.getSourceClassName() + SPC
                 + rec.getSourceMethodName() + NLN + rec.getMessage() + NLN + NLN );
     }
 
@@ -542,8 +754,8 @@ class MhsFormatter extends Formatter {
         return(DIV + NLN + TAIL + DateFormat.getDateTimeInstance().format(new Date()) + NLN + DIV + NLN + NLN);
     }
 
-    /** Number of times {@link MhsFormatter#format(LogRecord)} has been called */
-    private int count;
+    /** Number of times {@link MhsFormatter#format(LogRecord)} has been called, by ANY thread */
+    private final AtomicInteger count = new AtomicInteger();
 
     /** useful String constant */
     static final String
@@ -554,4 +766,30 @@ class MhsFormatter extends Formatter {
             REC    = ": " + LogControl.PROJECT_NAME + " record #",
             HEAD   = LogControl.PROJECT_NAME + " START" + NLN,
             TAIL   = LogControl.PROJECT_NAME + " END" + NLN;
-}
\ No newline at end of file
+}
+
+/* ================================================================================================================== */
+
+/**
+ *  ONE line for each {@link LogRecord}, as a cheaper alternative to {@link XMLFormatter}: <br>
+ *  <var>milliseconds LEVEL sequence class.method message</var>, with each newline of the message written as '\n'
+ */
+@SuppressWarnings("unused")
+class CompactFormatter extends Formatter {
+    @Override
+    public String format(LogRecord rec) {
+        String $msg = formatMessage( rec );
+        StringBuilder $sb = new StringBuilder( 96 + $msg.length() );
+        $sb.append( rec.getMillis() ).append( ' ' ).append( rec.getLevel().getName() ).append( ' ' )
+           .append( rec.getSequenceNumber() ).append( ' ' )
+           .append( rec.getSourceClassName() ).append( '.' ).append( rec.getSourceMethodName() ).append( ' ' );
+        for( int i = 0; i < $msg.length(); i++ ) {
+            char $c = $msg.charAt( i );
+            if( $c == '\n' )
+                $sb.append( "\\n" );
+            else if( $c != '\r' )
+                $sb.append( $c );
+        }
+        return $sb.append( '\n' ).toString();
+    }
+}
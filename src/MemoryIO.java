@@ -0,0 +1,36 @@
+/* ******************************************************************************
+ *
+ * MemoryIO.java
+ *
+ * The I/O device with output kept in memory
+ *
+ ********************************************************************************/
+
+
+/**
+ *  Output kept in memory, with optional scripted input
+ */
+class MemoryIO extends ScriptedIO {
+    /** @param input the words to enter, in order */
+    MemoryIO(final String... input) {
+        super( input );
+    }
+
+    /** ALL the output that has been flushed */
+    private final StringBuilder output = new StringBuilder();
+
+    @Override
+    protected void write(final CharSequence chars) { output.append(chars); }
+
+    /** @return ALL the output so far */
+    String output() {
+        flush();
+        return output.toString();
+    }
+
+    /** forget the output so far */
+    void clear() {
+        flush();
+        output.setLength(0);
+    }
+}
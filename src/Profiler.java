@@ -0,0 +1,223 @@
+/* ******************************************************************************
+ *
+ * Profiler.java
+ *
+ * Opt-in execution profiler for Sim68k
+ *  - counts per PC, opId, DataSize and AddressMode, branches and memory accesses
+ *  - at the end of a run: a text report and a collapsed-stack file for flame graphs
+ *
+ *  Turn on with -Dsim68k.profile=<folder for the reports>
+ *
+ ********************************************************************************/
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ *  Count what a program does, ONLY when a {@link Profiler} is attached to the machine <br>
+ *  ALL counters are primitive arrays, indexed by PC, opId (like Sim68k.Mnemo), DataSize or AddressMode ordinal
+ */
+class Profiler {
+    /**
+     * @param memorySize bytes of Memory the CPU of the machine can reach
+     * @param folder where the reports are written; created if necessary
+     */
+    Profiler(final int memorySize, final Path folder) {
+        this.folder = folder;
+        perPC = new long[memorySize];
+        blockOf = new int[memorySize];
+        taken = new long[memorySize];
+        notTaken = new long[memorySize];
+        target = new int[memorySize];
+        lastOp = new byte[memorySize];
+    }
+
+    /*
+     *        C O U N T E R S
+     ************************************************************************************************************ */
+
+    /** where the reports are written */
+    private final Path folder;
+
+    /** instructions executed at each PC */
+    final long[] perPC;
+
+    /** instructions executed for each opId */
+    final long[] perOp = new long[Sim68k.iHLT + 1];
+
+    /** instructions executed for each DataSize */
+    final long[] perSize = new long[Sim68k.DataSize.values().length];
+
+    /** operands used with each AddressMode */
+    final long[] perMode = new long[Sim68k.AddressMode.values().length];
+
+    /** branches at each PC that did, or did NOT, jump */
+    final long[] taken, notTaken;
+
+    /** where the branch at each PC jumped to, the last time it did */
+    private final int[] target;
+
+    /** start of the basic block that each PC was last executed in */
+    private final int[] blockOf;
+
+    /** opId last executed at each PC, OR -1 */
+    private final byte[] lastOp;
+
+    /** start of the current basic block */
+    private int block;
+
+    /** Memory accesses, including the fetch of instructions and operand addresses */
+    long reads, writes;
+
+    /** ALL instructions counted */
+    long instructions;
+
+    /*
+     *        C O U N T I N G
+     ************************************************************************************************************ */
+
+    /**
+     * Clear ALL the counters for a new run
+     * @param entryPC where the first basic block starts
+     */
+    void begin(final int entryPC) {
+        for( long[] $ar : List.of(perPC, perOp, perSize, perMode, taken, notTaken) )
+            Arrays.fill( $ar, 0L );
+        Arrays.fill( target, 0 );
+        Arrays.fill( blockOf, 0 );
+        Arrays.fill( lastOp, (byte)-1 );
+        reads = writes = instructions = 0;
+        block = entryPC;
+    }
+
+    /**
+     * Count ONE executed instruction
+     * @param pc address of the instruction
+     * @param opId of the instruction
+     * @param size ordinal of the DataSize
+     * @param mode1 ordinal of the AddressMode of the first operand, OR -1 if NOT used
+     * @param mode2 ordinal of the AddressMode of the second operand, OR -1 if NOT used
+     */
+    void instr(final int pc, final int opId, final int size, final int mode1, final int mode2) {
+        instructions++ ;
+        perPC[pc]++ ;
+        blockOf[pc] = block;
+        lastOp[pc] = (byte)opId;
+        perOp[opId]++ ;
+        perSize[size]++ ;
+        if( mode1 >= 0 )
+            perMode[mode1]++ ;
+        if( mode2 >= 0 )
+            perMode[mode2]++ ;
+    }
+
+    /**
+     * Count a branch, which also ends the current basic block
+     * @param pc address of the branch
+     * @param jumped true if the branch was taken
+     * @param next address of the next instruction to execute
+     */
+    void branch(final int pc, final boolean jumped, final int next) {
+        if( jumped ) {
+            taken[pc]++ ;
+            target[pc] = next;
+        }
+        else
+            notTaken[pc]++ ;
+        block = next;
+    }
+
+    /** @param read true for a READ of Memory, false for a WRITE */
+    void access(final boolean read) {
+        if( read ) reads++ ;
+        else writes++ ;
+    }
+
+    /*
+     *        R E P O R T S
+     ************************************************************************************************************ */
+
+    /** number of lines in each 'top' list of the report */
+    static final int TOP = 20;
+
+    /**
+     * Write <var>program</var>.profile.txt and <var>program</var>.collapsed to {@link #folder}
+     * @param program name of the program
+     * @param mnemo Mnemonic String for each opId
+     * @throws IOException if a report can NOT be written
+     */
+    void report(final String program, final String[] mnemo) throws IOException {
+        Files.createDirectories( folder );
+        try( PrintWriter $out = new PrintWriter(Files.newBufferedWriter(folder.resolve(program + ".profile.txt"))) ) {
+            $out.println( "PROFILE of " + program + ": " + instructions + " instructions, "
+                          + reads + " memory reads, " + writes + " memory writes" );
+            hotLoops( $out );
+            $out.println( "\nINSTRUCTION MIX" );
+            for( int i = 0; i < perOp.length; i++ )
+                if( perOp[i] > 0 )
+                    $out.printf( "  %-6s %12d %6.2f%%%n", mnemo[i], perOp[i], percent(perOp[i]) );
+            $out.println( "\nDATA SIZES" );
+            for( Sim68k.DataSize $ds : Sim68k.DataSize.values() )
+                $out.printf( "  %-6s %12d %6.2f%%%n", $ds.strValue(), perSize[$ds.ordinal()], percent(perSize[$ds.ordinal()]) );
+            $out.println( "\nADDRESS MODES (operands)" );
+            for( Sim68k.AddressMode $am : Sim68k.AddressMode.values() )
+                if( perMode[$am.ordinal()] > 0 )
+                    $out.printf( "  %-34s %12d%n", $am, perMode[$am.ordinal()] );
+            $out.println( "\nBRANCHES" );
+            $out.printf( "  %-8s %-6s %12s %12s%n", "PC", "instr", "taken", "not taken" );
+            for( int pc = 0; pc < perPC.length; pc++ )
+                if( taken[pc] + notTaken[pc] > 0 )
+                    $out.printf( "  %-8s %-6s %12d %12d%n", Sim68k.intHex(pc), opName(pc, mnemo), taken[pc], notTaken[pc] );
+            $out.println( "\nHOT INSTRUCTIONS" );
+            for( int pc : top(perPC) )
+                $out.printf( "  %-8s %-6s %12d %6.2f%%%n", Sim68k.intHex(pc), opName(pc, mnemo), perPC[pc], percent(perPC[pc]) );
+        }
+        try( PrintWriter $out = new PrintWriter(Files.newBufferedWriter(folder.resolve(program + ".collapsed"))) ) {
+            for( int pc = 0; pc < perPC.length; pc++ )
+                if( perPC[pc] > 0 )
+                    $out.println( program + ";block_" + Sim68k.intHex(blockOf[pc]) + ";" + Sim68k.intHex(pc) + "_"
+                                  + opName(pc, mnemo) + " " + perPC[pc] );
+        }
+    }
+
+    /** loops are found from backward branches that were taken */
+    private void hotLoops(final PrintWriter out) {
+        long[] $iterations = new long[perPC.length];
+        for( int pc = 0; pc < perPC.length; pc++ )
+            if( taken[pc] > 0 && target[pc] >= 0 && target[pc] <= pc )
+                $iterations[pc] = taken[pc];
+        out.println( "\nHOT LOOPS" );
+        out.printf( "  %-8s %-8s %12s %14s%n", "from", "to", "iterations", "instructions" );
+        for( int pc : top($iterations) ) {
+            long $instr = 0;
+            for( int i = target[pc]; i <= pc; i++ )
+                $instr += perPC[i];
+            out.printf( "  %-8s %-8s %12d %14d%n", Sim68k.intHex(target[pc]), Sim68k.intHex(pc), $iterations[pc], $instr );
+        }
+    }
+
+    /** @return up to {@link #TOP} indexes with the largest non-zero counts, largest first */
+    private static List<Integer> top(final long[] counts) {
+        List<Integer> $idx = new ArrayList<>();
+        for( int i = 0; i < counts.length; i++ )
+            if( counts[i] > 0 )
+                $idx.add(i);
+        $idx.sort( (a, b) -> Long.compare(counts[b], counts[a]) );
+        return $idx.subList( 0, Math.min(TOP, $idx.size()) );
+    }
+
+    /** @return name of the instruction last executed at pc */
+    private String opName(final int pc, final String[] mnemo) {
+        return lastOp[pc] >= 0 ? mnemo[lastOp[pc]] : "?" ;
+    }
+
+    private double percent(final long count) {
+        return instructions == 0 ? 0.0 : 100.0 * count / instructions ;
+    }
+}
@@ -0,0 +1,317 @@
+/* ******************************************************************************
+ *
+ * ProgramImage.java
+ *
+ * Binary program images for Sim68k
+ *  - convert a .68b text program to a .68i image
+ *  - map an image read-only for a bulk copy into Memory
+ *
+ *  Run from the project folder:
+ *    java -cp out ProgramImage in/arith.68b [in/arith.68i]
+ *
+ ********************************************************************************/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+
+/**
+ *  A program image: header, then the program bytes <br>
+ *  <pre>
+ *   offset  size
+ *      0     4   magic 'S68K'
+ *      4     2   version
+ *      6     2   flags, 0 = none
+ *      8     4   load address
+ *     12     4   entry PC
+ *     16     4   length of the program, in bytes
+ *     20     4   CRC-32 of the program bytes
+ *     24         the program bytes
+ *  </pre>
+ *  big-endian, the same as the 68000
+ */
+class ProgramImage {
+    /**
+     * @param load memory address of the first program byte
+     * @param entry first value of the PC
+     * @param code the program bytes, NOT copied
+     */
+    private ProgramImage(final int load, final int entry, final ByteBuffer code) {
+        loadAddress = load ;
+        entryPC = entry ;
+        program = code ;
+    }
+
+    /** memory address of the first program byte */
+    final int loadAddress ;
+
+    /** first value of the PC */
+    final int entryPC ;
+
+    /** the program bytes: read-only, position 0 */
+    private final ByteBuffer program ;
+
+    /** @return number of program bytes */
+    int length() { return program.remaining(); }
+
+    /** @return a read-only view of the program bytes, for a bulk copy */
+    ByteBuffer program() { return program.duplicate(); }
+
+    /*
+     *        F O R M A T
+     ************************************************************************************************************ */
+
+    /** 'S68K' */
+    static final int MAGIC = 0x5336384B ;
+
+    static final short VERSION = 1 ;
+
+    static final int HEADER_SIZE = 24 ;
+
+    /** file type of a text program */
+    static final String TEXT_TYPE = ".68b" ;
+
+    /** file type of a program image */
+    static final String IMAGE_TYPE = ".68i" ;
+
+    /*
+     *        R E A D
+     ************************************************************************************************************ */
+
+    /**
+     * Map an image file read-only and check its header and checksum
+     * @param file the image
+     * @return the image, with the program bytes still in the mapped file
+     * @throws IOException if the file can NOT be read OR is NOT a valid image
+     */
+    static ProgramImage map(final Path file) throws IOException {
+        MappedByteBuffer $buf;
+        try( FileChannel $chnl = FileChannel.open(file, StandardOpenOption.READ) ) {
+            if( $chnl.size() < HEADER_SIZE )
+                throw new IOException( file + " is too short for a program image" );
+            $buf = $chnl.map( FileChannel.MapMode.READ_ONLY, 0, $chnl.size() );
+        }
+        return read( $buf, file.toString() );
+    }
+
+    /**
+     * Check the header and checksum of an image ALREADY in memory, e.g. read from a stream
+     * @param buf ALL the bytes of the image, from index 0; its byte order is set to big-endian
+     * @param name of the image, for error messages
+     * @return the image, with the program bytes still in buf
+     * @throws IOException if buf is NOT a valid image
+     */
+    static ProgramImage read(final ByteBuffer buf, final String name) throws IOException {
+        if( buf.capacity() < HEADER_SIZE )
+            throw new IOException( name + " is too short for a program image" );
+        buf.order( ByteOrder.BIG_ENDIAN );
+        if( buf.getInt(0) != MAGIC )
+            throw new IOException( name + " is NOT a program image" );
+        if( buf.getShort(4) != VERSION )
+            throw new IOException( "UNKNOWN version " + buf.getShort(4) + " of program image " + name );
+        int $load = buf.getInt(8), $entry = buf.getInt(12), $length = buf.getInt(16) ;
+        if( $length < 0 || $length > buf.capacity() - HEADER_SIZE )
+            throw new IOException( "INVALID length " + $length + " in program image " + name );
+
+        ByteBuffer $code = buf.slice( HEADER_SIZE, $length ).asReadOnlyBuffer();
+        CRC32 $crc = new CRC32();
+        $crc.update( $code.duplicate() );
+        if( (int)$crc.getValue() != buf.getInt(20) )
+            throw new IOException( "BAD checksum in program image " + name );
+        return new ProgramImage( $load, $entry, $code );
+    }
+
+    /*
+     *        W R I T E
+     ************************************************************************************************************ */
+
+    /**
+     * Write a program image
+     * @param file to create or replace
+     * @param load memory address of the first program byte
+     * @param entry first value of the PC
+     * @param code the program bytes
+     * @throws IOException if the file can NOT be written
+     */
+    static void write(final Path file, final int load, final int entry, final byte[] code) throws IOException {
+        CRC32 $crc = new CRC32();
+        $crc.update( code );
+        ByteBuffer $buf = ByteBuffer.allocate( HEADER_SIZE + code.length ).order( ByteOrder.BIG_ENDIAN );
+        $buf.putInt( MAGIC ).putShort( VERSION ).putShort( (short)0 )
+            .putInt( load ).putInt( entry ).putInt( code.length ).putInt( (int)$crc.getValue() )
+            .put( code );
+        Files.write( file, $buf.array() );
+    }
+
+    /**
+     * Read the bytes of a .68b text program in ONE pass, with NO Strings or Scanner <br>
+     * - words are separated by whitespace, a word <b>equal to</b> '/' starts or ends a comment <br>
+     * - outside comments, a word starting with '$' gives a byte from its next 2 chars, as <em>Integer.parseInt(hex, 16)</em>
+     *   would, and any other word is skipped
+     * @param file the text program
+     * @return the program bytes, to load at address 0
+     * @throws FormatException if a '$' word has NO valid byte value
+     * @throws IOException if the file can NOT be read
+     */
+    static byte[] parseText(final Path file) throws IOException {
+        try( FileChannel $chnl = FileChannel.open(file, StandardOpenOption.READ) ) {
+            return parseText( $chnl, file.toString() );
+        }
+    }
+
+    /**
+     * @param chnl to read ALL the text from
+     * @param name of the file, for error messages
+     * @see #parseText(Path)
+     */
+    static byte[] parseText(final ReadableByteChannel chnl, final String name) throws IOException {
+        ByteBuffer $buf = ByteBuffer.allocate( READ_SIZE );
+        byte[] $code = new byte[256];
+        int $length = 0;
+        boolean $inComment = false;
+        // the current word: length so far, first 3 chars and position
+        int $wordLen = 0, $c0 = 0, $c1 = 0, $c2 = 0, $wordLine = 0, $wordCol = 0;
+        int $line = 1, $col = 0;
+        boolean $eof = false;
+        while( !$eof ) {
+            $buf.clear();
+            $eof = chnl.read($buf) < 0 ;
+            $buf.flip();
+            int $n = $eof ? $buf.limit() + 1 : $buf.limit() ; // one extra pass at the end to finish the last word
+            for( int i = 0; i < $n; i++ ) {
+                int $ch = (i < $buf.limit()) ? ($buf.get(i) & 0xFF) : ' ' ;
+                $col++ ;
+                if( !isSpace($ch) ) {
+                    if( $wordLen == 0 ) {
+                        $c0 = $ch;
+                        $wordLine = $line;
+                        $wordCol = $col;
+                    }
+                    else if( $wordLen == 1 )
+                        $c1 = $ch;
+                    else if( $wordLen == 2 )
+                        $c2 = $ch;
+                    $wordLen++ ;
+                    continue;
+                }
+                if( $ch == '\n' ) {
+                    $line++ ;
+                    $col = 0;
+                }
+                if( $wordLen == 0 )
+                    continue;
+                // end of a word
+                if( $wordLen == 1 && $c0 == Sim68k.COMMENT_MARKER.charAt(0) )
+                    $inComment = ! $inComment;
+                else if( !$inComment && $c0 == Sim68k.HEX_MARKER ) {
+                    int $val = ($wordLen < 3) ? BAD_BYTE : hexByte( $c1, $c2 );
+                    if( $val == BAD_BYTE )
+                        throw new FormatException( name, $wordLine, $wordCol );
+                    if( $length == $code.length )
+                        $code = Arrays.copyOf( $code, $length * 2 );
+                    $code[$length++] = (byte)$val;
+                }
+                $wordLen = 0;
+            }
+        }
+        return Arrays.copyOf( $code, $length );
+    }
+
+    /** bytes read from the file at a time */
+    static final int READ_SIZE = 16 * 1024 ;
+
+    /** {@link #hexByte} could NOT find a value */
+    private static final int BAD_BYTE = Integer.MIN_VALUE ;
+
+    /** @return true for the same ASCII chars as {@link Character#isWhitespace(char)} */
+    private static boolean isSpace(final int ch) {
+        return ch == ' ' || (ch >= 0x09 && ch <= 0x0D) || (ch >= 0x1C && ch <= 0x1F) ;
+    }
+
+    /** @return value of a hex digit, OR -1 */
+    private static int hexDigit(final int ch) {
+        if( ch >= '0' && ch <= '9' ) return ch - '0';
+        if( ch >= 'A' && ch <= 'F' ) return ch - 'A' + 10;
+        if( ch >= 'a' && ch <= 'f' ) return ch - 'a' + 10;
+        return -1;
+    }
+
+    /**
+     * The value of 2 chars, the same as <em>Integer.parseInt(hex, 16)</em>, so a sign is allowed in front of ONE digit
+     * @return the value, OR {@link #BAD_BYTE}
+     */
+    private static int hexByte(final int ch1, final int ch2) {
+        int $lo = hexDigit( ch2 );
+        if( $lo < 0 )
+            return BAD_BYTE;
+        if( ch1 == '-' ) return -$lo;
+        if( ch1 == '+' ) return $lo;
+        int $hi = hexDigit( ch1 );
+        return ($hi < 0) ? BAD_BYTE : ($hi << 4) | $lo ;
+    }
+
+    /**
+     *  A '$' word in a .68b program with NO valid byte value
+     */
+    static class FormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param file name of the program
+         * @param line of the word, from 1
+         * @param column of the first char of the word, from 1
+         */
+        FormatException(final String file, final int line, final int column) {
+            super( "INVALID byte value at line " + line + ", column " + column + " of " + file );
+            this.line = line;
+            this.column = column;
+        }
+
+        /** position of the word, from 1 */
+        final int line, column ;
+    }
+
+    /**
+     * Convert a .68b text program to a program image, loaded and started at address 0
+     * @param text the .68b program
+     * @param image the image to create or replace
+     * @return number of program bytes
+     * @throws IOException if either file has a problem
+     */
+    static int convert(final Path text, final Path image) throws IOException {
+        byte[] $code = parseText( text );
+        write( image, 0, 0, $code );
+        return $code.length;
+    }
+
+    /*
+     *  MAIN
+     ********************************************************************************************* */
+    public static void main(final String[] args) {
+        if( args.length < 1 ) {
+            System.err.println( "usage: ProgramImage <program" + TEXT_TYPE + "> [<image" + IMAGE_TYPE + ">]" );
+            System.exit( 2 );
+        }
+        String $text = args[0];
+        String $image = args.length > 1 ? args[1]
+                        : ($text.endsWith(TEXT_TYPE) ? $text.substring(0, $text.length() - TEXT_TYPE.length()) : $text)
+                          + IMAGE_TYPE ;
+        try {
+            int $length = convert( Path.of($text), Path.of($image) );
+            System.out.println( "Wrote " + $image + ": " + $length + " bytes." );
+        }
+        catch( IOException ioe ) {
+            System.err.println( "PROBLEM converting " + $text + ": " + ioe.getMessage() );
+            System.exit( 1 );
+        }
+    }
+}
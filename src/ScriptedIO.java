@@ -0,0 +1,32 @@
+/* ******************************************************************************
+ *
+ * ScriptedIO.java
+ *
+ * The I/O device with input given in advance
+ *
+ ********************************************************************************/
+
+import java.util.NoSuchElementException;
+
+
+/**
+ *  Input from a list of words given in advance, output to the console
+ */
+class ScriptedIO extends BufferedIO {
+    /** @param input the words to enter, in order */
+    ScriptedIO(final String... input) {
+        words = input.clone();
+    }
+
+    private final String[] words ;
+
+    /** index of the next word */
+    private int posn ;
+
+    @Override
+    public String next() {
+        if( posn >= words.length )
+            throw new NoSuchElementException();
+        return words[posn++];
+    }
+}
@@ -13,9 +13,19 @@
  *
  *********************************************************************************************/
 
-import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.Scanner;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
 
 /**
  *  originally a Pascal program created in Nov 1999 for CSI2111 <br>
@@ -108,7 +118,7 @@ class Sim68k {
         String strValue() { return name; }
     }
     /** get the proper DataSize from the value in the OpCode */
-    static DataSize getDataSize(int code) {
+    DataSize getDataSize(int code) {
         if( code == 0 ) return DataSize.ByteSize;
         if( code == 1 ) return DataSize.WordSize;
         if( code == 2 ) return DataSize.LongSize;
@@ -128,7 +138,7 @@ class Sim68k {
         ADDRESS_REGISTER_INDIRECT_PREDEC
     }
     /** get the proper AddressMode from the value in the OpCode */
-    static AddressMode getAddressMode(int code) {
+    AddressMode getAddressMode(int code) {
         switch( code ) {
             case 0 -> { return AddressMode.DATA_REGISTER_DIRECT; }
             case 1 -> { return AddressMode.ADDRESS_REGISTER_DIRECT; }
@@ -149,17 +159,314 @@ class Sim68k {
         return null ;
     }
 
+    /** Determines the format of the instruction: return True if F1, False if F2 */
+    static boolean isFormatF1( int opid ) {
+        return (opid != iADDQ) && (opid != iSUBQ) && ( (opid < iLSL) || (opid > iROR) ) && (opid != iMOVQ);
+    }
+
+    /**
+     *  Errors of a simulated program, each with a code for the log: the program halts
+     */
+    enum SimError {
+        INVALID_DATA_SIZE( "Invalid Data Size" ),
+        INVALID_ADDRESS_MODE( "Invalid Addressing Mode" ),
+        DIVISION_BY_ZERO( "Division by Zero" ),
+        INVALID_OPERANDS( "Invalid number of operands" ),
+        INVALID_INSTRUCTION( "Invalid instruction" ),
+        INVALID_ADDRESS( "Invalid address" ),
+        INVALID_INPUT( "Invalid input" );
+
+        SimError(String txt) { this.text = txt; }
+
+        /** description, as shown in the log */
+        final String text ;
+
+        /** @return e.g. <var>E03</var> */
+        String code() { return String.format( "E%02d", ordinal() + 1 ); }
+    }
+
+    /*
+     *   T I M I N G
+     * ========================================================================================================= */
+
+    /** clock rate of the original 68000 in Hz, for the simulated time of a free-running run */
+    static final long MC68000_CLOCK = 8_000_000L ;
+
+    /**
+     *  Cycles to calculate an effective address, from the 68000 timing tables: [mode][0 = byte/word, 1 = long] <br>
+     *  RELATIVE_ABSOLUTE is an absolute short address; the unused modes cost nothing as they are reported as errors
+     */
+    private static final int[][] EA_CYCLES = {
+        {  0,  0 }, // Dn
+        {  0,  0 }, // An
+        {  0,  0 }, // unused
+        {  8, 12 }, // abs.W
+        {  4,  8 }, // (An)
+        {  0,  0 }, // unused
+        {  4,  8 }, // (An)+
+        {  6, 10 }  // -(An)
+    };
+
+    /** @return cycles for the effective address of an operand, 0 for a register OR an invalid mode */
+    private static int eaCycles( final AddressMode mode, final boolean isLong ) {
+        return (mode == null) ? 0 : EA_CYCLES[ mode.ordinal() ][ isLong ? 1 : 0 ] ;
+    }
+
+    /** @return true for Dn OR An */
+    private static boolean isRegister( final AddressMode mode ) {
+        return mode == AddressMode.DATA_REGISTER_DIRECT || mode == AddressMode.ADDRESS_REGISTER_DIRECT ;
+    }
+
+    /**
+     *  The 68000 clock cycles of an instruction, from the Motorola timing tables, with 2 operands of Memory
+     *  costing BOTH effective addresses <br>
+     *  INP, DSP and DSR are costed as a TRAP to the system, HLT as STOP
+     *  @param opId of the instruction
+     *  @param ds DataSize, <em>null</em> if invalid
+     *  @param m1 AddressMode of the source, OR of the only operand of a Format F1 instruction
+     *  @param m2 AddressMode of the destination
+     *  @param opcData count of a shift OR rotate
+     *  @param taken true for a branch that jumps
+     */
+    static int cycleCost( final int opId, final DataSize ds, final AddressMode m1, final AddressMode m2,
+                          final int opcData, final boolean taken ) {
+        final boolean lng = (ds == DataSize.LongSize) ;
+        final int ea1 = eaCycles( m1, lng ), ea2 = eaCycles( m2, lng ) ;
+        switch( opId ) {
+            case iADD, iSUB, iAND, iOR, iCMP:
+                if( isRegister(m2) || opId == iCMP ) {
+                    if( lng )
+                        return (isRegister(m1) && opId != iCMP ? 8 : 6) + ea1 + ea2 ;
+                    // ADDA/SUBA.W 8, CMPA.W 6
+                    return (m2 != AddressMode.ADDRESS_REGISTER_DIRECT ? 4 : opId == iCMP ? 6 : 8) + ea1 + ea2 ;
+                }
+                return (lng ? 12 : 8) + ea1 + ea2 ;
+            case iEOR:
+                return isRegister( m2 ) ? (lng ? 8 : 4) + ea1 : (lng ? 12 : 8) + ea1 + ea2 ;
+            case iMULS:
+                return 70 + ea1 + ea2 ;
+            case iDIVS:
+                return 158 + ea1 + ea2 ;
+            case iNEG, iCLR, iNOT:
+                return isRegister( m1 ) ? (lng ? 6 : 4) : (lng ? 12 : 8) + ea1 ;
+            case iTST:
+                return 4 + ea1 ;
+            case iADDQ, iSUBQ:
+                if( m2 == AddressMode.ADDRESS_REGISTER_DIRECT )
+                    return 8 ;
+                return (m2 == AddressMode.DATA_REGISTER_DIRECT) ? (lng ? 8 : 4) : (lng ? 12 : 8) + ea2 ;
+            case iLSL, iLSR, iROL, iROR:
+                return (isRegister(m2) ? (lng ? 8 : 6) : 6 + ea2) + 2 * opcData ;
+            case iBRA:
+                return 10 ;
+            case iBVS, iBEQ, iBCS, iBGE, iBLE:
+                return taken ? 10 : 12 ;
+            case iMOV:
+                return 4 + ea1 + (isRegister(m2) ? 0 : m2 == AddressMode.RELATIVE_ABSOLUTE ? (lng ? 12 : 8) : (lng ? 8 : 4)) ;
+            case iMOVQ:
+                return 4 ;
+            case iEXG:
+                return 6 ;
+            case iMOVA:
+                return 8 ;
+            case iHLT:
+                return 4 ;
+            default: // INP, DSP, DSR
+                return 34 ;
+        }
+    }
+
+    /**
+     *  The fields of an OpCode as found by {@link Controller#decodeInstr()} <br>
+     *  <em>immutable</em>: one instance for each valid entry of {@link #DecodeTable}
+     */
+    static final class DecodedInstr {
+        DecodedInstr( int code ) {
+            opId = (byte)( (code >> 11) & 0x1F );
+            DS = DataSize.values()[ (code >> 9) & 0x3 ];
+            numOprd = (byte)( ((code >> 8) & 0x1) + 1 );
+            formatF1 = isFormatF1( opId );
+            if( formatF1 && opId >= iDSR ) {
+                opdM1 = opdM2 = AddressMode.DATA_REGISTER_DIRECT ;
+                opdR1 = opdR2 = 0 ;
+            }
+            else {
+                opdM1 = AddressMode.values()[ (code >> 5) & 0x7 ];
+                opdR1 = (byte)( (code >> 4) & 0x1 );
+                opdM2 = AddressMode.values()[ (code >> 1) & 0x7 ];
+                opdR2 = (byte)( code & 0x1 );
+            }
+            opcData = (byte)( (code >> 4) & 0xF );
+            cycles = (short)cycleCost( opId, DS, opdM1, opdM2, opcData, false );
+            takenCycles = (short)cycleCost( opId, DS, opdM1, opdM2, opcData, true );
+        }
+        final byte opId, numOprd, opcData ;
+        /** 68000 clock cycles of the instruction; for a branch, when it does NOT jump */
+        final short cycles ;
+        /** 68000 clock cycles of the instruction when it jumps; the same as {@link #cycles} if NOT a branch */
+        final short takenCycles ;
+        final DataSize DS ;
+        final AddressMode opdM1, opdM2 ;
+        final byte opdR1, opdR2 ;
+        /** true if F1, false if F2 */
+        final boolean formatF1 ;
+    }
+
+    /**
+     *  Every OpCode decoded ahead of time, indexed by the <b>unsigned</b> value of the OpCode <br>
+     *  <em>null</em> entries, i.e. an invalid DataSize or an unused AddressMode, are left to
+     *  {@link Controller#decodeInstr()} so the usual warnings and errors are still reported
+     */
+    static final DecodedInstr[] DecodeTable = buildDecodeTable();
+
+    /** fill the table with the decoded value of all 64K OpCodes */
+    private static DecodedInstr[] buildDecodeTable() {
+        DecodedInstr[] table = new DecodedInstr[0x10000];
+        for( int code = 0; code < table.length; code++ ) {
+            if( ((code >> 9) & 0x3) == 3 ) // no DataSize
+                continue;
+            int opid = (code >> 11) & 0x1F ;
+            int m2 = (code >> 1) & 0x7 ;
+            int m1 = (code >> 5) & 0x7 ;
+            // decodeInstr() will log a warning for these
+            if( m2 == 2 || m2 == 5 )
+                continue;
+            if( isFormatF1(opid) && opid < iDSR && (m1 == 2 || m1 == 5) )
+                continue;
+            table[code] = new DecodedInstr( code );
+        }
+        return table;
+    }
+
     /** hex values 0x0000 to 0x1000 */
-    static final int MemorySize = 0x1001 ;
+    static final int DEFAULT_MEMORY_SIZE = 0x1001 ;
+
+    /** the full 24-bit address space of the 68000: 16 MB */
+    static final int MAX_MEMORY_SIZE = 1 << 24 ;
+
+    /** memory a short reaches as a SIGNED address */
+    static final int SHORT_MEMORY_SIZE = 0x8000 ;
+
+    /** the addresses in instructions and registers are 16 bits, so the CPU reaches 64 KB of a larger memory */
+    static final int CPU_ADDRESS_SPACE = 0x10000 ;
+
+    /** Memory is kept in pages of 256 bytes, allocated on the first write and the unit of copy-on-write for a {@link Snapshot} */
+    static final int PAGE_BITS = 8 ,
+                     PAGE_SIZE = 1 << PAGE_BITS ,
+                     PAGE_MASK = PAGE_SIZE - 1 ;
+
+    /** big-endian views of a Memory page, like the 68000, for a Word or Long in ONE access */
+    private static final VarHandle PAGE_WORD = MethodHandles.byteArrayViewVarHandle( short[].class, ByteOrder.BIG_ENDIAN ),
+                                   PAGE_LONG = MethodHandles.byteArrayViewVarHandle( int[].class, ByteOrder.BIG_ENDIAN );
+
+    /*
+      Instance state
+     ================
+     EVERYTHING that changes while a program runs belongs to a Sim68k instance and is used by
+     ONE thread at a time, so a JVM can hold as many independent machines as it has memory for.
+     Only immutable tables, e.g. DecodeTable, are static.
+    **************************************************************************************************** */
+
+    /** only the menu in {@link #startup} sets up logging later */
+    Sim68k() {
+        MemorySize = DEFAULT_MEMORY_SIZE ;
+        addressMask = -1 ;
+        cpuSpace = MemorySize ;
+    }
+
+    /**
+     *  A machine with its own Logger, which sends to the handlers of <var>lc</var>
+     *  @param lc shared Logging management
+     */
+    Sim68k(final LogControl lc) {
+        this( lc, DEFAULT_MEMORY_SIZE );
+    }
+
+    /**
+     *  @param lc shared Logging management; <em>null</em> = log NOTHING, with NO logs folder, e.g. for {@link Sim68kEngine}
+     *  @param memorySize number of bytes of Memory, up to {@link #MAX_MEMORY_SIZE}
+     */
+    Sim68k(final LogControl lc, final int memorySize) {
+        if( memorySize <= 0 || memorySize > MAX_MEMORY_SIZE )
+            throw new IllegalArgumentException( "INVALID memory size = " + memorySize );
+        MemorySize = memorySize ;
+        addressMask = (memorySize > SHORT_MEMORY_SIZE) ? 0xFFFF : -1 ;
+        cpuSpace = Math.min( memorySize, CPU_ADDRESS_SPACE );
+        if( lc != null )
+            setLogging( lc );
+        else
+            logger = LogControl.newSilentLogger();
+    }
+
+    /** bytes of Memory for this machine */
+    final int MemorySize ;
+
+    /**
+     *  An address in a short is zero-extended ONLY when Memory is larger than a short can reach as a signed value,
+     *  so a negative address on a small machine still fails as it always has
+     */
+    private final int addressMask ;
+
+    /** bytes of Memory the CPU can reach: translated code and profiles cover ONLY these */
+    final int cpuSpace ;
+
+    /** @return the Memory address held in a register, PC, MAR OR operand address */
+    int address( short addr ) {
+        return addr & addressMask ;
+    }
 
     /** Mnemonic String for opCodes */
-    static String[] Mnemo ;
+    final String[] Mnemo = MnemoInit();
 
     /** Logging management */
-    protected static LogControl logControl;
+    protected LogControl logControl;
+
+    /** Logging actions: a Logger for THIS machine */
+    protected MhsLogger logger;
 
-    /** Logging actions */
-    protected static MhsLogger logger;
+    /** bind this machine to the handlers of <var>lc</var> */
+    void setLogging(final LogControl lc) {
+        logControl = lc ;
+        logger = lc.newLogger();
+    }
+
+    /** @return a NEW Mnemo table, with Strings corresponding to each instruction */
+    static String[] MnemoInit() {
+        String[] Mnemo = new String[iHLT + 1 ];
+        Mnemo[iADD]   = "ADD";
+        Mnemo[iADDQ]  = "ADDQ";
+        Mnemo[iSUB]   = "SUB";
+        Mnemo[iSUBQ]  = "SUBQ";
+        Mnemo[iMULS]  = "MULS";
+        Mnemo[iDIVS]  = "DIVS";
+        Mnemo[iNEG]   = "NEG";
+        Mnemo[iCLR]   = "CLR";
+        Mnemo[iNOT]   = "NOT";
+        Mnemo[iAND]   = "AND";
+        Mnemo[iOR]    = "OR";
+        Mnemo[iEOR]   = "EOR";
+        Mnemo[iLSL]   = "LSL";
+        Mnemo[iLSR]   = "LSR";
+        Mnemo[iROL]   = "ROL";
+        Mnemo[iROR]   = "ROR";
+        Mnemo[iCMP]   = "CMP";
+        Mnemo[iTST]   = "TST";
+        Mnemo[iBRA]   = "BRA";
+        Mnemo[iBVS]   = "BVS";
+        Mnemo[iBEQ]   = "BEQ";
+        Mnemo[iBCS]   = "BCS";
+        Mnemo[iBGE]   = "BGE";
+        Mnemo[iBLE]   = "BLE";
+        Mnemo[iMOV]   = "MOVE";
+        Mnemo[iMOVQ]  = "MOVEQ";
+        Mnemo[iEXG]   = "EXG";
+        Mnemo[iMOVA]  = "MOVEA";
+        Mnemo[iINP]   = "INP";
+        Mnemo[iDSP]   = "DSP";
+        Mnemo[iDSR]   = "DSR";
+        Mnemo[iHLT]   = "HLT";
+        return Mnemo;
+    }
 
     /*
      *   HARDWARE
@@ -168,6 +475,111 @@ class Sim68k {
     /** program storage */
     private Memory mem;
 
+    /** translated code of the program; <em>null</em> = use ONLY the plain Fetch-Execute Cycle */
+    private BlockCache blockCache;
+
+    /** I/O device for INP, DSP & DSR, and the menu */
+    private SimIO io;
+
+    /** counts for a profile of the program; <em>null</em> = NOT profiling, which costs nothing */
+    private Profiler profiler;
+
+    /** binary history of the executed instructions; <em>null</em> = NOT tracing, which costs nothing */
+    private Tracer tracer;
+
+    /** breakpoints and watchpoints; <em>null</em> = NONE set, which costs nothing */
+    private Debugger debugger;
+
+    /** where each value read by INP is recorded; <em>null</em> = NOT recording */
+    private InputLog.Recorder inputRecord;
+
+    /** recorded values for INP, read INSTEAD of the I/O device; <em>null</em> = NOT replaying */
+    private InputLog.Replay inputReplay;
+
+    /** the Processor of this machine, for the instruction count of the input log */
+    private Processor cpu;
+
+    /** live counts for JMX; <em>null</em> = metrics off, which costs only a null check where a count would be made */
+    private SimMetrics.Cpu metrics;
+
+    /** first error of the last run, OR <em>null</em> */
+    SimError error ;
+
+    /** PC of the instruction with the {@link #error} */
+    short errorPC ;
+
+    /**
+     *  Report an error of the simulated program with its code, PC and operation: the program will halt
+     *  @param err what went wrong
+     *  @param detail added to the description; may be empty
+     */
+    void fail( SimError err, String detail ) {
+        short pc = (short)( PC - 2 );
+        if( error == null ) {
+            error = err ;
+            errorPC = pc ;
+        }
+        String op = (cpu == null) ? null : Mnemo[cpu.ctrl.opId] ;
+        logger.logError( err.code(), pc, op, "'" + err.text + "'" + (detail == null || detail.isEmpty() ? "" : " (" + detail + ")") );
+        H = true ; // program will halt
+    }
+
+    /*
+     *   SNAPSHOTS
+     * ========================================================================================================= */
+
+    /**
+     *  The registers, status bits and Memory of a machine at one moment <br>
+     *  <em>immutable</em>: the Memory pages are shared copy-on-write, so ONE Snapshot can be
+     *  restored to any number of machines of the same memory size, in any thread
+     */
+    static final class Snapshot {
+        private Snapshot( Sim68k sim ) {
+            PC = sim.PC ;
+            DR = sim.DR.clone();
+            AR = sim.AR.clone();
+            C = sim.C ; V = sim.V ; Z = sim.Z ; N = sim.N ; H = sim.H ;
+            MAR = sim.MAR ;
+            MDR = sim.MDR ;
+            memorySize = sim.MemorySize ;
+            pages = sim.mem.share();
+        }
+        final short PC, MAR ;
+        final int MDR ;
+        private final int[] DR ;
+        private final short[] AR ;
+        final boolean C, V, Z, N, H ;
+        final int memorySize ;
+        private final byte[][] pages ;
+    }
+
+    /**
+     *  Take a Snapshot: only pointers are copied now, each page is copied later by the first write to it
+     *  @return the current state of this machine
+     */
+    Snapshot snapshot() {
+        settleFlags();
+        return new Snapshot( this );
+    }
+
+    /**
+     *  Go back to a Snapshot of this OR another machine: only the pages written since then are different <br>
+     *  use {@link Processor#resume()} to continue from the saved PC, OR {@link Processor#start()} to run the program again
+     *  @param snap Snapshot of a machine with the same memory size
+     */
+    void restore( Snapshot snap ) {
+        if( snap.memorySize != MemorySize )
+            throw new IllegalArgumentException( "Snapshot memory size " + snap.memorySize + " != " + MemorySize );
+        mem.restore( snap.pages );
+        PC = snap.PC ;
+        System.arraycopy( snap.DR, 0, DR, 0, DR.length );
+        System.arraycopy( snap.AR, 0, AR, 0, AR.length );
+        C = snap.C ; V = snap.V ; Z = snap.Z ; N = snap.N ; H = snap.H ;
+        flagsOp = FLAGS_DONE ;
+        MAR = snap.MAR ;
+        MDR = snap.MDR ;
+    }
+
     // The CPU registers
     /** Program Counter */
     short PC ;
@@ -201,6 +613,143 @@ class Sim68k {
     /** Temporary Registers Dest, Src, Result */
     TempReg TMPD, TMPS, TMPR;
 
+    /*
+      Lazy condition codes
+     ======================
+     Most instructions set C, V, Z and N, but nearly all of those values are overwritten
+     before a Bcc or DSR reads them. So by default the arithmetic & logic instructions only
+     record their operands, and the status bits are calculated when they are actually needed.
+    **************************************************************************************************** */
+
+    /** the kinds of flag-producing operation that can be waiting in {@link #flagsOp} */
+    static final byte FLAGS_DONE  = 0 , // C, V, Z & N are up to date
+                      FLAGS_ADD   = 1 , // ADD, ADDQ
+                      FLAGS_SUB   = 2 , // SUB, SUBQ, CMP
+                      FLAGS_NEG   = 3 , // NEG
+                      FLAGS_LOGIC = 4 ; // Z & N from the result, V = C = false
+
+    /** false to calculate the status bits immediately after each instruction */
+    boolean lazyFlags = true ;
+
+    /** last flag-producing operation NOT yet applied to the status bits */
+    private byte flagsOp = FLAGS_DONE ;
+    /** DataSize, source, destination and result of {@link #flagsOp} */
+    private DataSize flagsDS ;
+    private int flagsS, flagsD, flagsR ;
+
+    /** remember an operation that sets the status bits */
+    void recordFlags( byte op, DataSize dsz, int src, int dest, int result ) {
+        flagsOp = op ;
+        flagsDS = dsz ;
+        flagsS = src ;
+        flagsD = dest ;
+        flagsR = result ;
+        if( !lazyFlags )
+            settleFlags();
+    }
+
+    /** bring C, V, Z and N up to date: MUST be called before anything reads or partly sets them */
+    void settleFlags() {
+        if( flagsOp == FLAGS_DONE )
+            return;
+        int top = topShift( flagsDS ), r = flagsR << top ;
+        setCCR( switch( flagsOp ) {
+            case FLAGS_ADD -> ccrAdd( flagsS << top, flagsD << top, r );
+            case FLAGS_SUB -> ccrSub( flagsS << top, flagsD << top, r );
+            case FLAGS_NEG -> ccrNeg( flagsD << top, r );
+            default -> ccrZN( r );
+        } );
+        flagsOp = FLAGS_DONE ;
+    }
+
+    /*
+      A L U   K E R N E L S
+     =======================
+     The status bits of an operation from a few integer operations on its operands & result,
+     with NO call for each bit. A value of each DataSize is first moved to the top of an int
+     by topShift(), so its most significant bit is the sign bit and ONE kernel serves all 3 sizes.
+    **************************************************************************************************** */
+
+    /** the status bits packed like the 68000 Condition Code Register */
+    static final int CCR_N = 8 ,
+                     CCR_Z = 4 ,
+                     CCR_V = 2 ,
+                     CCR_C = 1 ;
+
+    /** @return the left shift that moves the most significant bit of dsz to bit 31 */
+    static int topShift( DataSize dsz ) {
+        return switch( dsz ) {
+            case ByteSize -> 24 ;
+            case WordSize -> 16 ;
+            default -> 0 ;
+        };
+    }
+
+    /** @return N and Z of a result at the top of an int */
+    static int ccrZN( int r ) {
+        return (r < 0 ? CCR_N : 0) | (r == 0 ? CCR_Z : 0) ;
+    }
+
+    /** @return N, Z, V and C of r = d + s, ALL at the top of an int */
+    static int ccrAdd( int s, int d, int r ) {
+        return ccrZN( r ) | ( (((s ^ r) & (d ^ r)) >>> 31) << 1 ) | ( ((s & d) | (~r & (s | d))) >>> 31 ) ;
+    }
+
+    /** @return N, Z, V and C of r = d - s, ALL at the top of an int */
+    static int ccrSub( int s, int d, int r ) {
+        return ccrZN( r ) | ( (((s ^ d) & (r ^ d)) >>> 31) << 1 ) | ( ((s & ~d) | (r & (s | ~d))) >>> 31 ) ;
+    }
+
+    /** @return N, Z, V and C of r = -d, BOTH at the top of an int */
+    static int ccrNeg( int d, int r ) {
+        return ccrZN( r ) | ( ((d & r) >>> 31) << 1 ) | ( (d | r) >>> 31 ) ;
+    }
+
+    /** set C, V, Z and N from the packed bits */
+    void setCCR( int ccr ) {
+        N = (ccr & CCR_N) != 0 ;
+        Z = (ccr & CCR_Z) != 0 ;
+        V = (ccr & CCR_V) != 0 ;
+        C = (ccr & CCR_C) != 0 ;
+    }
+
+    /*
+     The shifts & rotates by n = 0..15 of an operand d of 'bits' = 8, 16 or 32 bits, as the micro-programs
+     always did them with getBits() and setBits(): the result is NOT cut to the DataSize, C is read from
+     (short)d so ABOVE bit 15 it is the sign of the low word, and a rotate by 0 gives 0 as setBits()
+     rejects an empty range.
+    **************************************************************************************************** */
+
+    /** @return d rotated left by n, n already reduced modulo bits */
+    static int rol( int d, int n, int bits ) {
+        if( n == 0 )
+            return 0;
+        return (d << n) | ( (d >>> (bits - n)) & ((1 << n) - 1) ) ;
+    }
+
+    /** @return d rotated right by n, n already reduced modulo bits */
+    static int ror( int d, int n, int bits ) {
+        if( n == 0 )
+            return 0;
+        int low = (1 << n) - 1, at = bits - n ;
+        return ( (d >>> n) & ~(low << at) ) | ( (d & low) << at ) ;
+    }
+
+    /** @return C of LSL by n: the last bit shifted out, bit (bits - n); false if that is below bit 0 */
+    static boolean lslCarry( int d, int n, int bits ) {
+        return n > 0  &&  bits - n >= 0  &&  ( ((short)d >> (bits - n)) & 1 ) != 0 ;
+    }
+
+    /** @return C of LSR OR ROR by n: bit (n - 1) */
+    static boolean rightCarry( int d, int n ) {
+        return n > 0  &&  ( (d >> (n - 1)) & 1 ) != 0 ;
+    }
+
+    /** @return C of ROL by n: bit (bits - n) */
+    static boolean rolCarry( int d, int n, int bits ) {
+        return n > 0  &&  ( ((short)d >> (bits - n)) & 1 ) != 0 ;
+    }
+
     /*
       Functions for bit manipulation
      ================================
@@ -299,13 +848,13 @@ class Sim68k {
      *  MSW: false = Least Significant Word, true = Most Significant Word
      */
     int getWord(final int nV, boolean MSW) {
-        logger.finer( "nV = " + nV + " | " + intHex(nV) );
+        logger.logValue( Level.FINER, "nV", nV );
         if( MSW )
             return( nV >>> 16 );
         int nvl = nV << 16 ;
-        logger.finer( "nvl = " + nvl + " | " + intHex(nvl) );
+        logger.logValue( Level.FINER, "nvl", nvl );
         int nvr = nvl >>> 16 ;
-        logger.finer( "nvr = " + nvr + " | " + intHex(nvr) );
+        logger.logValue( Level.FINER, "nvr", nvr );
         return nvr ;
     }
 
@@ -315,17 +864,17 @@ class Sim68k {
      *  <b>NEED</b> this version for the fill() and write() methods of <em>TempReg</em>
      */
     int setWord(int nV, final boolean MSW, final int val) {
-        logger.finer( "nV = " + nV + " | " + intHex(nV) );
-        logger.finer( "val = " + val + " | " + intHex(val) );
+        logger.logValue( Level.FINER, "nV", nV );
+        logger.logValue( Level.FINER, "val", val );
         if( MSW ) {
             int nvmod = nV & 0x0000FFFF ;
-            logger.finer( "nvmod = " + nvmod + " | " + intHex(nvmod) );
+            logger.logValue( Level.FINER, "nvmod", nvmod );
             short valmod = (short)(val << 16);
-            logger.finer( "valmod = " + valmod + " | " + intHex(valmod) );
+            logger.logValue( Level.FINER, "valmod", valmod );
             return( nvmod | valmod );
         }
         int nvmod = nV & 0xFFFF0000 ;
-        logger.finer( "nvmod = " + nvmod + " | " + intHex(nvmod) );
+        logger.logValue( Level.FINER, "nvmod", nvmod );
         return( nvmod | val );
     }
 
@@ -394,17 +943,16 @@ class Sim68k {
          *  @param data  byte from OpCode
          */
         void fillWithData( DataSize dsz, byte data ) {
-            logger.info( dsp() + "; dsz = " + dsz.strValue() + "; data = " + byteInHex(data) );
+            if( logger.infoOn() )
+                logger.info( dsp() + "; dsz = " + dsz.strValue() + "; data = " + byteInHex(data) );
             switch( dsz ) {
-                case ByteSize -> value = setByte( value, BytePosn.byte0, data );
-                case WordSize -> value = setWord( value, LEAST, data );
-                case LongSize -> {
-                    value = setWord( value, LEAST, data );
-                    value = setWord( value, MOST, 0 );
-                }
+                case ByteSize -> value = (value & 0xFFFFFF00) | data ;
+                case WordSize -> value = (value & 0xFFFF0000) | data ;
+                case LongSize -> value = data & 0xFFFF ;
                 default -> logger.logError( "INVALID data size = " + dsz );
             }
-            logger.info( dsp() );
+            if( logger.infoOn() )
+                logger.info( dsp() );
         }
 
         /*
@@ -422,51 +970,40 @@ class Sim68k {
          *  @param  regNo  Register number for A[n] or D[n]
          */
         void fill( short opAddr, DataSize dsz, AddressMode mode, byte regNo ) {
-            logger.finer( dsp() + "; OpAddr = " + opAddr + "; dsz = " + dsz.strValue()
-                            + "; adrMode = " + mode + "; RegNo = " + regNo );
+            if( logger.finerOn() )
+                logger.finer( dsp() + "; OpAddr = " + opAddr + "; dsz = " + dsz.strValue()
+                                + "; adrMode = " + mode + "; RegNo = " + regNo );
             switch (mode) {
-                case DATA_REGISTER_DIRECT -> {
-                    value = DR[regNo] ;
-                    if( dsz == DataSize.ByteSize )
-                        value = setByte( DR[regNo], BytePosn.byte1, (byte)0 );
-                    if( dsz.sizeValue() <= DataSize.WordSize.sizeValue() ) {
-                        value = setWord( value, MOST, 0 );
-                    }
-                }
+                case DATA_REGISTER_DIRECT -> value = switch( dsz ) {
+                    case ByteSize -> DR[regNo] & 0xFF ;
+                    case WordSize -> DR[regNo] & 0xFFFF ;
+                    default -> DR[regNo] ;
+                };
                 case ADDRESS_REGISTER_DIRECT -> value = AR[regNo] ;
 
-                case RELATIVE_ABSOLUTE -> {
-                    // We need to access memory, except for branching & MOVA
-                    MAR = opAddr;
-                    mem.access( dsz, READ );
-                    value = MDR ;
-                }
-                case ADDRESS_REGISTER_INDIRECT -> {
-                    // We need to access memory.
-                    MAR = AR[regNo];
-                    mem.access( dsz, READ );
-                    value = MDR ;
-                }
+                // We need to access memory, except for branching & MOVA
+                case RELATIVE_ABSOLUTE -> value = mem.read( opAddr, dsz );
+
+                // We need to access memory.
+                case ADDRESS_REGISTER_INDIRECT -> value = mem.read( AR[regNo], dsz );
+
                 case ADDRESS_REGISTER_INDIRECT_POSTINC -> {
                     // We need to access memory.
-                    MAR = AR[regNo];
-                    mem.access( dsz, READ );
-                    value = MDR ;
+                    value = mem.read( AR[regNo], dsz );
                     AR[regNo] = (short)( AR[regNo] + dsz.sizeValue() );
                 }
                 case ADDRESS_REGISTER_INDIRECT_PREDEC -> {
                     // We need to access memory.
                     AR[regNo] = (short)( AR[regNo] - dsz.sizeValue() );
-                    MAR = AR[regNo];
-                    mem.access( dsz, READ );
-                    value = MDR ;
+                    value = mem.read( AR[regNo], dsz );
                 }
-                default -> { // This should never occur, but just in case...!
-                    logger.logError( "\n>>> INVALID Addressing Mode '" + mode + "' at PC = " + (PC-2) );
-                    H = true;
+                default -> {
+                    fail( SimError.INVALID_ADDRESS_MODE, String.valueOf(mode) ); // This should never occur, but just in case...!
+                    value = 0 ; // NOT the value of an earlier instruction, which a bound Step does NOT leave here
                 }
             }
-            logger.fine( "now " + dsp() );
+            if( logger.fineOn() )
+                logger.fine( "now " + dsp() );
         }
 
         /**
@@ -477,56 +1014,46 @@ class Sim68k {
          *  @param  regNo  Register Number for A[n] or D[n]
          */
         void write( short opAddr, DataSize dsz, AddressMode mode, byte regNo ) {
-            logger.finer( dsp() + "; OpAddr = " + opAddr + "; dsz = " + dsz.strValue()
-                            + "; adrMode = " + mode + "; RegNo = " + regNo );
+            if( logger.finerOn() )
+                logger.finer( dsp() + "; OpAddr = " + opAddr + "; dsz = " + dsz.strValue()
+                                + "; adrMode = " + mode + "; RegNo = " + regNo );
             switch (mode) {
                 case DATA_REGISTER_DIRECT -> {
                     switch (dsz) {
-                        case ByteSize -> DR[regNo] = setBits( DR[regNo], (byte)0, (byte)7, (short)value );
+                        case ByteSize -> DR[regNo] = (DR[regNo] & 0xFFFFFF00) | (value & 0xFF) ;
                         case WordSize -> {
-                            int dr = DR[regNo];
-                            int gwl = getWord( value, LEAST );
-                            int swd = setWord( dr, LEAST, gwl );
-                            logger.fine( "new D[" + regNo + "] = " + swd + " | " + intHex(swd) );
+                            int swd = (DR[regNo] & 0xFFFF0000) | (value & 0xFFFF) ;
+                            if( logger.fineOn() )
+                                logger.fine( "new D[" + regNo + "] = " + swd + " | " + intHex(swd) );
                             DR[regNo] = swd;
                         }
                         case LongSize -> DR[regNo] = value;
-                        default -> {
-                            logger.logError( "\n>>> INVALID data size '" + dsz + "' at PC = " + (PC-2) );
-                            H = true;
-                        }
+                        default -> fail( SimError.INVALID_DATA_SIZE, String.valueOf(dsz) );
                     }
-                    logger.fine( "now D[" + regNo + "] = " + Sim68k.intHexBin( DR[regNo] ) );
+                    if( logger.fineOn() )
+                        logger.fine( "now D[" + regNo + "] = " + Sim68k.intHexBin( DR[regNo] ) );
                 }
                 case ADDRESS_REGISTER_DIRECT -> AR[regNo] = (short)getWord( value, LEAST );
 
                 // We need to access memory, except for branching & MOVA
                 case RELATIVE_ABSOLUTE -> {
-                    MAR = opAddr;
-                    MDR = value;
-                    mem.access( dsz, WRITE );
-                    logger.fine( "now Memory at " + MAR + " = " + mem.show(MAR) );
+                    mem.write( opAddr, dsz, value );
+                    if( logger.fineOn() )
+                        logger.fine( "now Memory at " + MAR + " = " + mem.show(address(MAR)) );
                 }
                 // We need to access memory
                 case ADDRESS_REGISTER_INDIRECT, ADDRESS_REGISTER_INDIRECT_PREDEC -> {
                     // ATTENTION: for some instructions, the address register has already been decremented by fillTmpReg
                     // DO NOT decrement it a 2nd time here
-                    MAR = AR[regNo];
-                    MDR = value;
-                    mem.access( dsz, WRITE );
+                    mem.write( AR[regNo], dsz, value );
                 }
                 // We need to access memory.
                 case ADDRESS_REGISTER_INDIRECT_POSTINC -> {
                     // ATTENTION: for some instructions, the address register has already been incremented by fillTmpReg()
                     // DO NOT increment it a 2nd time here
-                    MAR = (short)( AR[regNo] - dsz.sizeValue() );
-                    MDR = value;
-                    mem.access( dsz, WRITE );
-                }
-                default -> {
-                    logger.logError( "\n>>> INVALID Addressing Mode '" + mode + "' at PC = " + (PC-2) );
-                    H = true;
+                    mem.write( (short)( AR[regNo] - dsz.sizeValue() ), dsz, value );
                 }
+                default -> fail( SimError.INVALID_ADDRESS_MODE, String.valueOf(mode) );
             }
         }
     }
@@ -535,20 +1062,223 @@ class Sim68k {
     class Memory {
         Memory() {
             logger.logInit();
-            memory = new byte[MemorySize];
+            int numPages = (MemorySize + PAGE_SIZE - 1) >> PAGE_BITS ;
+            pages = new byte[numPages][];
+            shared = new boolean[numPages];
+            // every page starts as the SAME zero page, shared, so it is allocated by its first write
+            byte[] zero = new byte[PAGE_SIZE];
+            Arrays.fill( pages, zero );
+            Arrays.fill( shared, true );
+            int lastSize = MemorySize - ((numPages - 1) << PAGE_BITS) ;
+            if( lastSize < PAGE_SIZE ) {
+                pages[numPages - 1] = new byte[lastSize];
+                shared[numPages - 1] = false;
+            }
+            // page 0 holds the program and its data on a small machine: NEVER needs a copy for its first write
+            if( numPages > 1 || lastSize == PAGE_SIZE )
+                pages[0] = new byte[PAGE_SIZE];
+            shared[0] = false;
+        }
+
+        /**
+         *  store the binary program, in pages which may be shared with a {@link Snapshot} OR with each other until written <br>
+         *  the last page is cut to MemorySize, so an access past the end fails as it would with ONE array
+         */
+        private byte[][] pages;
+
+        /** a shared page is copied before it is written */
+        private final boolean[] shared;
+
+        /** operand reads and writes by the CPU, counted ONLY while {@link SimMetrics} is on */
+        long reads, writes ;
+
+        /** read a byte, WITHOUT using MAR and MDR */
+        byte peek( int place ) {
+            return pages[place >> PAGE_BITS][place & PAGE_MASK];
+        }
+
+        /** write a byte, WITHOUT using MAR and MDR: copy the page first if it is shared */
+        void poke( int place, byte value ) {
+            writable( place >> PAGE_BITS )[place & PAGE_MASK] = value;
+        }
+
+        /** @return page number pg, copied first if it is shared, which allocates a page never written before */
+        private byte[] writable( int pg ) {
+            if( shared[pg] ) {
+                pages[pg] = pages[pg].clone();
+                shared[pg] = false;
+            }
+            return pages[pg];
+        }
+
+        /*
+         *  Typed big-endian access, WITHOUT using MAR and MDR <br>
+         *  ONE compare against the length of the page: inside it, the Word or Long is read or written in ONE go;
+         *  across pages OR past the end of memory, byte by byte, which fails at the same byte as before
+         */
+
+        /** @return the SIGNED byte at place */
+        int readByte( int place ) {
+            return peek( place );
+        }
+
+        /** @return the UNSIGNED word at place */
+        int readWord( int place ) {
+            byte[] page = pages[place >> PAGE_BITS];
+            int offset = place & PAGE_MASK ;
+            if( offset + 2 <= page.length )
+                return (short)PAGE_WORD.get( page, offset ) & 0xFFFF ;
+            return ( (peek(place) & 0xFF) << 8 ) | ( peek(place+1) & 0xFF );
+        }
+
+        /** @return the long at place */
+        int readLong( int place ) {
+            byte[] page = pages[place >> PAGE_BITS];
+            int offset = place & PAGE_MASK ;
+            if( offset + 4 <= page.length )
+                return (int)PAGE_LONG.get( page, offset );
+            return ( readWord(place) << 16 ) | readWord( place+2 );
+        }
+
+        void writeByte( int place, int value ) {
+            poke( place, (byte)value );
+        }
+
+        /** write the LSW of value */
+        void writeWord( int place, int value ) {
+            byte[] page = writable( place >> PAGE_BITS );
+            int offset = place & PAGE_MASK ;
+            if( offset + 2 <= page.length ) {
+                PAGE_WORD.set( page, offset, (short)value );
+                return;
+            }
+            poke( place, (byte)(value >> 8) );
+            poke( place+1, (byte)value );
+        }
+
+        void writeLong( int place, int value ) {
+            byte[] page = writable( place >> PAGE_BITS );
+            int offset = place & PAGE_MASK ;
+            if( offset + 4 <= page.length ) {
+                PAGE_LONG.set( page, offset, value );
+                return;
+            }
+            writeWord( place, value >> 16 );
+            writeWord( place+2, value );
+        }
+
+        /**
+         *  Read an operand for the CPU: MAR and MDR are still set, as they are seen by the debugger and DSR <br>
+         *  {@link #access} is used for anything unusual, so errors and logging are the same as before
+         *  @return the new MDR
+         */
+        int read( short addr, DataSize dsz ) {
+            if( metrics != null )
+                reads++ ;
+            if( debugger != null )
+                debugger.access( address(addr), dsz.sizeValue(), READ );
+            return fetch( addr, dsz );
+        }
+
+        /** read an instruction word OR operand address: the same as {@link #read}, but NOT seen by watchpoints */
+        int fetch( short addr, DataSize dsz ) {
+            MAR = addr;
+            int place = address( addr );
+            if( place < MemorySize && profiler == null && !logger.infoOn() ) {
+                switch( dsz ) {
+                    case ByteSize -> { return MDR = readByte( place ); }
+                    case WordSize -> { return MDR = readWord( place ); }
+                    case LongSize -> { return MDR = readLong( place ); }
+                    default -> { }
+                }
+            }
+            access( dsz, READ );
+            return MDR;
         }
 
-        /** store the binary program */
-        private final byte[] memory;
+        /** Write an operand from the CPU: MAR and MDR are still set, see {@link #read} */
+        void write( short addr, DataSize dsz, int value ) {
+            if( metrics != null )
+                writes++ ;
+            if( debugger != null )
+                debugger.access( address(addr), dsz.sizeValue(), WRITE );
+            MAR = addr;
+            MDR = value;
+            int place = address( addr );
+            if( place < MemorySize && profiler == null && !logger.infoOn() ) {
+                switch( dsz ) {
+                    case ByteSize -> {
+                        if( blockCache != null )
+                            blockCache.written( place, 1 );
+                        writeByte( place, value );
+                        return;
+                    }
+                    case WordSize -> {
+                        if( blockCache != null )
+                            blockCache.written( place, 2 );
+                        writeWord( place, value );
+                        return;
+                    }
+                    case LongSize -> {
+                        if( blockCache != null )
+                            blockCache.written( place, 4 );
+                        writeLong( place, value );
+                        return;
+                    }
+                    default -> { }
+                }
+            }
+            access( dsz, WRITE );
+        }
 
         /** load the binary program to memory */
-        void load( short location, byte data ) {
-            logger.fine("Read value " + byteInHex(data) + " into memory at location: " + location);
-            memory[location] = data ;
+        void load( int location, byte data ) {
+            if( logger.fineOn() )
+                logger.fine("Read value " + byteInHex(data) + " into memory at location: " + location);
+            poke( location, data );
+        }
+
+        /**
+         *  Bulk copy of a binary program to memory
+         *  @param location address of the first byte
+         *  @param data ALL the remaining bytes are copied; the position is NOT changed
+         *  @return false if the data does NOT fit in memory
+         */
+        boolean load( int location, ByteBuffer data ) {
+            if( location < 0 || location + data.remaining() > MemorySize )
+                return false;
+            int from = data.position(), end = location + data.remaining() ;
+            // ONE bulk copy for each page, copied first if it is shared
+            for( int place = location; place < end; ) {
+                int offset = place & PAGE_MASK ;
+                int count = Math.min( end - place, PAGE_SIZE - offset );
+                data.get( from + place - location, writable(place >> PAGE_BITS), offset, count );
+                place += count ;
+            }
+            return true;
         }
 
         /** display a memory byte value as a hex String */
-        String show(int place) { return byteInHex( memory[place] ); }
+        String show(int place) { return byteInHex( peek(place) ); }
+
+        /** @return ALL the pages, which are now shared and will be copied before the next write to each of them */
+        byte[][] share() {
+            Arrays.fill( shared, true );
+            return pages.clone();
+        }
+
+        /**
+         *  Go back to the pages from {@link #share()}, invalidating the translated code in any page that has changed
+         *  @param saved pages of a Memory of the same size
+         */
+        void restore( byte[][] saved ) {
+            for( int i = 0; i < pages.length; i++ ) {
+                if( pages[i] != saved[i] && blockCache != null )
+                    blockCache.written( i << PAGE_BITS, PAGE_SIZE );
+            }
+            pages = saved.clone();
+            Arrays.fill( shared, true );
+        }
 
         /**
          *  Copies an element (Byte, Word, Long) from memory to MDR <b>OR</b> MDR to memory <br>
@@ -557,72 +1287,922 @@ class Sim68k {
          *  @param dsz determines the data size (byte, word, long)
          */
         void access(DataSize dsz, boolean RW ) {
-            if( MAR >= MemorySize ) { // INVALID Memory Address
-                logger.logError("\n*** INVALID address: " + MAR);
-                H = true ; // End of simulation...!
+            final int place = address( MAR );
+            if( place >= MemorySize ) { // INVALID Memory Address
+                fail( SimError.INVALID_ADDRESS, Integer.toString(place) ); // End of simulation...!
                 return;
             }
+            if( profiler != null )
+                profiler.access( RW );
             if( RW ) { // true = READ = copy an element from memory to the CPU's MDR
                 switch (dsz) {
-                    case ByteSize -> MDR = memory[MAR];
-//                    case wordSize -> MDR = memory[MAR] * 0x100 + memory[MAR + 1];
-                    // addition of memory addresses DOES NOT WORK because Java only does SIGNED addition
+                    case ByteSize -> MDR = readByte(place);
                     case WordSize -> {
-                        byte mem0 = memory[MAR] ;
-                        byte mem1 = memory[MAR+1] ;
-                        logger.fine( "Memory[" + MAR + "] = " + mem0 + " | " + byteInHex(mem0) );
-                        logger.fine( "Memory[" + (MAR+1) + "] = " + mem1 + " | " + byteInHex(mem1) );
-                        int mdrt1 = ( (mem0 * 0x100) & 0x0000FF00 ) | ( mem1 & 0x000000FF );
-                        logger.fine( "mdrt1 = " + mdrt1 + " | " + intHex(mdrt1) );
-                        MDR = mdrt1 ;
-                    }
-                    case LongSize -> MDR = ( (memory[MAR] * 0x1000000) & 0xFF000000 ) |
-                                           ( (memory[MAR+1] * 0x10000) & 0x00FF0000 ) |
-                                           ( (memory[MAR+2] * 0x100)   & 0x0000FF00 ) |
-                                           (  memory[MAR+3] & 0x000000FF );
-                    default -> {
-                        logger.logError("\n*** INVALID data size: " + dsz.strValue());
-                        H = true;
+                        MDR = readWord(place);
+                        if( logger.fineOn() ) {
+                            logger.fine( "Memory[" + place + "] = " + peek(place) + " | " + byteInHex(peek(place)) );
+                            logger.fine( "Memory[" + (place+1) + "] = " + peek(place+1) + " | " + byteInHex(peek(place+1)) );
+                        }
+                        logger.logValue( Level.FINE, "mdrt1", MDR );
                     }
+                    case LongSize -> MDR = readLong(place);
+                    default -> fail( SimError.INVALID_DATA_SIZE, dsz.strValue() );
                 }
-                logger.info("READ of " + dsz.strValue() + ": now MDR = " + intHexBin(MDR));
+                if( logger.infoOn() )
+                    logger.info("READ of " + dsz.strValue() + ": now MDR = " + intHexBin(MDR));
                 return;
             }
             // false = WRITE = copy an element from the CPU's MDR to memory
-            logger.info( "WRITE of " + dsz.strValue() + ": MAR = " + MAR + " | MDR = " + intHexBin(MDR) );
+            if( blockCache != null )
+                blockCache.written( place, dsz.sizeValue() );
+            if( logger.infoOn() )
+                logger.info( "WRITE of " + dsz.strValue() + ": MAR = " + place + " | MDR = " + intHexBin(MDR) );
             switch (dsz) {
                 case ByteSize -> {
-                    memory[MAR] = (byte)( MDR % 0x100 ); // LSB: 8 last bits
-                    logger.fine( dsz.strValue() + ".WRITE: now memory[" + MAR + "] = " + byteInHex(memory[MAR]) );
+                    writeByte( place, MDR ); // LSB: 8 last bits
+                    if( logger.fineOn() )
+                        logger.fine( dsz.strValue() + ".WRITE: now memory[" + place + "] = " + byteInHex(peek(place)) );
                 }
                 case WordSize -> {
-//                    memory[MAR]   = (byte)( (MDR / 0x100) % 0x100 ); // MSB: 8 first bits
-                    // division DOES NOT WORK because Java rounds up to next integer instead of just dropping the fraction part
-                    byte mdrb = (byte)( (MDR >> 8)  &  0x000000FF );
-                    logger.finer( "mdrb = " + mdrb + " | " + intHex(mdrb) );
-                    memory[MAR]   = mdrb; // MSB: 8 first bits
-                    memory[MAR+1] = (byte)( MDR % 0x100 ); // LSB: 8 last bits
-                    logger.fine( dsz.strValue()
-                                    + ".WRITE: memory[" + MAR + "] now = " + byteInHex(memory[MAR])
-                                    + "\n\t\t\tmemory[" + (MAR+1) + "] now = " + byteInHex(memory[MAR+1]) );
+                    logger.logValue( Level.FINER, "mdrb", (byte)(MDR >> 8) );
+                    writeWord( place, MDR ); // LSW
+                    if( logger.fineOn() )
+                        logger.fine( dsz.strValue()
+                                        + ".WRITE: memory[" + place + "] now = " + byteInHex(peek(place))
+                                        + "\n\t\t\tmemory[" + (place+1) + "] now = " + byteInHex(peek(place+1)) );
                 }
                 case LongSize -> {
-                    memory[MAR]   = (byte)( (MDR >> 24) & 0x000000FF );
-                    memory[MAR+1] = (byte)( (MDR >> 16) & 0x000000FF );
-                    memory[MAR+2] = (byte)( (MDR >>  8) & 0x000000FF );
-                    memory[MAR+3] = (byte)( MDR % 0x100 );
-                    logger.fine( dsz.strValue()
-                                    + ".WRITE: memory[" + MAR + "] now = " + byteInHex(memory[MAR])
-                                    + "\n\t\t\tmemory[" + (MAR+1) + "] now = " + byteInHex(memory[MAR+1])
-                                    + "\n\t\t\tmemory[" + (MAR+2) + "] now = " + byteInHex(memory[MAR+2])
-                                    + "\n\t\t\tmemory[" + (MAR+3) + "] now = " + byteInHex(memory[MAR+3]));
+                    writeLong( place, MDR );
+                    if( logger.fineOn() )
+                        logger.fine( dsz.strValue()
+                                        + ".WRITE: memory[" + place + "] now = " + byteInHex(peek(place))
+                                        + "\n\t\t\tmemory[" + (place+1) + "] now = " + byteInHex(peek(place+1))
+                                        + "\n\t\t\tmemory[" + (place+2) + "] now = " + byteInHex(peek(place+2))
+                                        + "\n\t\t\tmemory[" + (place+3) + "] now = " + byteInHex(peek(place+3)));
+                }
+                default -> fail( SimError.INVALID_DATA_SIZE, dsz.strValue() );
+            }
+        }
+    }
+
+    /**
+     *  A straight-line run of instructions, ending with a branch or HLT <br>
+     *  translated ONCE by {@link Controller#translate(int)}, each instruction bound by {@link StepBinder},
+     *  then run with no fetch or decode
+     */
+    class Block {
+        Block( int start, int end, Controller.Step[] steps ) {
+            this.start = start;
+            this.end = end;
+            this.steps = steps;
+            int sum = 0 ;
+            opIds = new byte[ steps.length ];
+            for( int i = 0; i < steps.length; i++ ) {
+                sum += steps[i].di.cycles ;
+                opIds[i] = steps[i].di.opId ;
+            }
+            cycles = sum ;
+            Controller.Step last = steps[ steps.length - 1 ];
+            takenExtra = last.di.takenCycles - last.di.cycles ;
+        }
+        /** address of the first instruction */
+        final int start ;
+        /** address after the last instruction */
+        final int end ;
+        /** the translated instructions */
+        final Controller.Step[] steps ;
+        /** false once a WRITE to memory has changed the code of this Block */
+        boolean valid = true ;
+        /** number of times this Block has been run by the interpreter */
+        int runs ;
+        /** the code from {@link BlockCompiler} once this Block is hot */
+        CompiledBlock compiled ;
+        /** 68000 clock cycles of ALL the steps, with a final branch that does NOT jump */
+        final int cycles ;
+        /** cycles to add when the final branch jumps */
+        final int takenExtra ;
+        /** opId of each step, for {@link SimMetrics} */
+        final byte[] opIds ;
+
+        /** @return cycles of the first n steps, for a run that stopped inside this Block */
+        int cycles( int n ) {
+            int sum = 0 ;
+            for( int i = 0; i < n; i++ )
+                sum += steps[i].di.cycles ;
+            return sum;
+        }
+    }
+
+    /** keep the translated {@link Block}s of the program, by start address */
+    class BlockCache {
+        BlockCache() {
+            logger.logInit();
+            blocks = new Block[cpuSpace];
+            covered = new short[cpuSpace];
+            binder = new StepBinder();
+            compiler = new BlockCompiler();
+        }
+
+        /** default number of runs before a Block is compiled */
+        static final int COMPILE_THRESHOLD = 64 ;
+
+        /** number of runs before a Block is compiled; 0 = NEVER compile */
+        int compileThreshold = COMPILE_THRESHOLD ;
+
+        /** most Steps in ONE Block, so straight code entered at many places is NOT translated whole from each */
+        static final int MAX_STEPS = 64 ;
+
+        /** binds each Step to its operands at translation */
+        final StepBinder binder;
+        /** the second tier */
+        private final BlockCompiler compiler;
+
+        /** the Block starting at each address */
+        private final Block[] blocks;
+        /** number of Blocks that include each memory address */
+        private final short[] covered;
+        /** all the valid Blocks */
+        private final ArrayList<Block> live = new ArrayList<>();
+
+        /**
+         *  Get the Block starting at pc, translating it if necessary
+         *  @return <em>null</em> if the instruction at pc can NOT be translated
+         */
+        Block lookup( Controller ctrl, short addr ) {
+            int pc = address( addr );
+            if( pc < 0 || pc >= cpuSpace )
+                return null;
+            Block blk = blocks[pc];
+            if( blk == null ) {
+                blk = ctrl.translate( pc );
+                if( blk != null ) {
+                    blocks[pc] = blk;
+                    live.add( blk );
+                    for( int i = blk.start; i < blk.end; i++ )
+                        covered[i]++ ;
+                }
+            }
+            return blk;
+        }
+
+        /** check if a WRITE of size bytes at addr has changed any translated code */
+        void written( int addr, int size ) {
+            int first = Math.max( addr, 0 );
+            int last = Math.min( addr + size, cpuSpace );
+            for( int i = first; i < last; i++ )
+                if( covered[i] != 0 ) {
+                    invalidate( first, last );
+                    return;
+                }
+        }
+
+        /** remove ALL the Blocks that include any address from first up to last */
+        private void invalidate( int first, int last ) {
+            for( int n = live.size() - 1; n >= 0; n-- ) {
+                Block blk = live.get( n );
+                if( blk.start < last && blk.end > first ) {
+                    if( logger.fineOn() )
+                        logger.fine( "WRITE to " + first + " invalidates Block at " + blk.start );
+                    blk.valid = false;
+                    blocks[blk.start] = null;
+                    for( int i = blk.start; i < blk.end; i++ )
+                        covered[i]-- ;
+                    live.remove( n );
+                }
+            }
+        }
+
+        /**
+         *  Count a run of blk with its bound Steps and compile it when it becomes hot <br>
+         *  Blocks only run while NOT logging at CONFIG or finer, so the first run at OR above the threshold
+         *  after the logging goes back down compiles it
+         */
+        void countRun( Block blk ) {
+            if( ++blk.runs >= compileThreshold ) {
+                blk.compiled = compiler.compile( blk );
+                if( blk.compiled == null )
+                    blk.runs = Integer.MIN_VALUE ; // NOT compiled: keep the bound Steps, NOT try again each run
+            }
+        }
+
+        /** remove ALL the Blocks, e.g. when a new program is loaded */
+        void clear() {
+            for( Block blk : live )
+                blk.valid = false;
+            live.clear();
+            Arrays.fill( blocks, null );
+            Arrays.fill( covered, (short)0 );
+        }
+    }
+
+    /*
+      Operands of translated code
+     =============================
+     The same as TempReg.fill() and TempReg.write() for an absolute address that StepBinder has checked
+     is in Memory: at = address(addr). Used by the bound Steps AND by the code of BlockCompiler.
+    **************************************************************************************************** */
+
+    int loadByte( short addr, int at ) {
+        if( metrics != null ) mem.reads++;
+        MAR = addr;
+        return MDR = mem.readByte( at );
+    }
+
+    int loadWord( short addr, int at ) {
+        if( metrics != null ) mem.reads++;
+        MAR = addr;
+        return MDR = mem.readWord( at );
+    }
+
+    int loadLong( short addr, int at ) {
+        if( metrics != null ) mem.reads++;
+        MAR = addr;
+        return MDR = mem.readLong( at );
+    }
+
+    /** a write invalidates the translated code there, the same as {@link Memory#access} */
+    void storeByte( short addr, int at, int value ) {
+        if( metrics != null ) mem.writes++;
+        MAR = addr;
+        MDR = value;
+        if( blockCache != null ) blockCache.written( at, 1 );
+        mem.writeByte( at, value );
+    }
+
+    void storeWord( short addr, int at, int value ) {
+        if( metrics != null ) mem.writes++;
+        MAR = addr;
+        MDR = value;
+        if( blockCache != null ) blockCache.written( at, 2 );
+        mem.writeWord( at, value );
+    }
+
+    void storeLong( short addr, int at, int value ) {
+        if( metrics != null ) mem.writes++;
+        MAR = addr;
+        MDR = value;
+        if( blockCache != null ) blockCache.written( at, 4 );
+        mem.writeLong( at, value );
+    }
+
+    /** an instruction of a {@link Block} bound to its operands */
+    interface CompiledOp {
+        void run();
+    }
+
+    /**
+     *  Bind each instruction of a {@link Block}, when it is translated, to a {@link CompiledOp} with its
+     *  operands already resolved, which works directly on the registers, memory and status bits,
+     *  WITHOUT using the TempRegs or the switch in {@link Controller#execInstr()} <br>
+     *  An instruction NOT handled here, or with an operand that could give an error OR a warning,
+     *  keeps the micro-program in {@link Controller.Step#interpret()}
+     */
+    class StepBinder {
+        /** @return <em>null</em> if st is NOT handled by the binder */
+        CompiledOp bind( Controller.Step st ) {
+            final DecodedInstr di = st.di ;
+            final DataSize dsz = di.DS ;
+            final short next = st.nextPC, mar = st.lastMAR ;
+            final int mdr = st.lastMDR ;
+            switch( di.opId ) {
+                case iADD, iSUB, iCMP -> {
+                    final IntSupplier src = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    final IntSupplier dst = reader( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer out = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    if( src == null || dst == null || out == null )
+                        return null;
+                    if( di.opId == iADD )
+                        return () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            int s = src.getAsInt(), d = dst.getAsInt(), r = s + d ;
+                            recordFlags( FLAGS_ADD, dsz, s, d, r );
+                            out.accept( r );
+                        };
+                    final boolean cmp = (di.opId == iCMP) ;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int s = src.getAsInt(), d = dst.getAsInt(), r = d - s ;
+                        recordFlags( FLAGS_SUB, dsz, s, d, r );
+                        if( !cmp )
+                            out.accept( r );
+                    };
+                }
+                case iADDQ, iSUBQ -> {
+                    final IntSupplier dst = reader( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer out = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    if( dst == null || out == null )
+                        return null;
+                    final int s = di.opcData ;
+                    if( di.opId == iADDQ )
+                        return () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            int d = dst.getAsInt(), r = d + s ;
+                            recordFlags( FLAGS_ADD, dsz, s, d, r );
+                            out.accept( r );
+                        };
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int d = dst.getAsInt(), r = d - s ;
+                        recordFlags( FLAGS_SUB, dsz, s, d, r );
+                        out.accept( r );
+                    };
+                }
+                case iMULS -> {
+                    if( dsz != DataSize.WordSize )
+                        return null;
+                    final IntSupplier src = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    final IntSupplier dst = reader( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer out = writer( DataSize.LongSize, di.opdM2, di.opdR2, st.addr2 );
+                    if( src == null || dst == null || out == null )
+                        return null;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int s = (short)src.getAsInt(), d = (short)dst.getAsInt(), r = d * s ;
+                        settleFlags();
+                        setZN( ccrZN(r << 16) );
+                        V = false;
+                        C = false;
+                        out.accept( r );
+                    };
+                }
+                case iNEG, iNOT -> {
+                    final IntSupplier dst = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    final IntConsumer out = writer( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    if( dst == null || out == null )
+                        return null;
+                    if( di.opId == iNEG )
+                        return () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            int d = dst.getAsInt(), r = -d ;
+                            recordFlags( FLAGS_NEG, dsz, 0, d, r );
+                            out.accept( r );
+                        };
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int d = dst.getAsInt(), r = ~d ;
+                        recordFlags( FLAGS_LOGIC, dsz, 0, d, r );
+                        out.accept( r );
+                    };
+                }
+                case iCLR -> {
+                    final IntConsumer out = writer( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    if( out == null )
+                        return null;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        recordFlags( FLAGS_LOGIC, dsz, 0, 0, 0 );
+                        out.accept( 0 );
+                    };
+                }
+                case iAND, iOR, iEOR -> {
+                    final IntSupplier src = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    final IntSupplier dst = reader( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer out = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    if( src == null || dst == null || out == null )
+                        return null;
+                    final byte op = di.opId ;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int s = src.getAsInt(), d = dst.getAsInt() ;
+                        int r = (op == iAND) ? (d & s) : (op == iOR) ? (d | s) : (d ^ s) ;
+                        recordFlags( FLAGS_LOGIC, dsz, s, d, r );
+                        out.accept( r );
+                    };
+                }
+                case iLSL, iLSR, iROL, iROR -> {
+                    final IntSupplier dst = reader( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer out = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    if( dst == null || out == null )
+                        return null;
+                    final int bits = 8 * dsz.sizeValue(), top = topShift( dsz ) ;
+                    final int n = (di.opId == iLSL || di.opId == iLSR) ? di.opcData : di.opcData % bits ;
+                    // leave the warnings to the micro-programs
+                    if( (di.opId == iLSL) ? n > bits : (di.opId != iLSR && n == 0) )
+                        return null;
+                    return switch( di.opId ) {
+                        case iLSL -> () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            settleFlags();
+                            int d = dst.getAsInt(), r = d << n ;
+                            setZN( ccrZN(r << top) );
+                            V = false;
+                            C = lslCarry( d, n, bits );
+                            out.accept( r );
+                        };
+                        case iLSR -> () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            settleFlags();
+                            int d = dst.getAsInt(), r = d >>> n ;
+                            setZN( ccrZN(r << top) );
+                            V = false;
+                            C = rightCarry( d, n );
+                            out.accept( r );
+                        };
+                        case iROL -> () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            settleFlags();
+                            int d = dst.getAsInt(), r = rol( d, n, bits ) ;
+                            setZN( ccrZN(r << top) );
+                            V = false;
+                            C = rolCarry( d, n, bits );
+                            out.accept( r );
+                        };
+                        default -> () -> {
+                            PC = next; MAR = mar; MDR = mdr;
+                            settleFlags();
+                            int d = dst.getAsInt(), r = ror( d, n, bits ) ;
+                            setZN( ccrZN(r << top) );
+                            V = false;
+                            C = rightCarry( d, n );
+                            out.accept( r );
+                        };
+                    };
+                }
+                case iTST -> {
+                    final IntSupplier dst = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    if( dst == null )
+                        return null;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int d = dst.getAsInt() ;
+                        recordFlags( FLAGS_LOGIC, dsz, 0, d, d );
+                    };
+                }
+                case iMOV -> {
+                    final IntSupplier src = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    final IntConsumer out = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    if( src == null || out == null )
+                        return null;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        out.accept( src.getAsInt() );
+                    };
+                }
+                case iMOVQ -> {
+                    if( di.opdM2 != AddressMode.DATA_REGISTER_DIRECT )
+                        return null;
+                    final IntConsumer out = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final int data = di.opcData ;
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        recordFlags( FLAGS_LOGIC, dsz, 0, data, data );
+                        out.accept( data );
+                    };
+                }
+                case iEXG -> {
+                    if( !isRegister(di.opdM1) || !isRegister(di.opdM2) )
+                        return null;
+                    final IntSupplier src = reader( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    final IntSupplier dst = reader( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer toDst = writer( dsz, di.opdM2, di.opdR2, st.addr2 );
+                    final IntConsumer toSrc = writer( dsz, di.opdM1, di.opdR1, st.addr1 );
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        int s = src.getAsInt(), d = dst.getAsInt() ;
+                        toDst.accept( s );
+                        toSrc.accept( d );
+                        settleFlags();
+                        V = false;
+                        C = false;
+                    };
+                }
+                case iMOVA -> {
+                    if( di.opdM1 != AddressMode.RELATIVE_ABSOLUTE || di.opdM2 != AddressMode.ADDRESS_REGISTER_DIRECT
+                            || dsz != DataSize.WordSize )
+                        return null;
+                    final short addr = st.addr1 ;
+                    final byte reg = di.opdR2 ;
+                    return () -> { PC = next; MAR = mar; MDR = mdr; AR[reg] = addr; };
+                }
+                case iBRA, iBVS, iBEQ, iBCS, iBGE, iBLE -> {
+                    // leave the errors to checkCond() in the micro-program
+                    if( di.opdM1 != AddressMode.RELATIVE_ABSOLUTE || dsz != DataSize.WordSize )
+                        return null;
+                    final short target = st.addr1 ;
+                    return switch( di.opId ) {
+                        case iBRA -> () -> { MAR = mar; MDR = mdr; PC = target; };
+                        case iBVS -> () -> { MAR = mar; MDR = mdr; settleFlags(); PC = V ? target : next; };
+                        case iBEQ -> () -> { MAR = mar; MDR = mdr; settleFlags(); PC = Z ? target : next; };
+                        case iBCS -> () -> { MAR = mar; MDR = mdr; settleFlags(); PC = C ? target : next; };
+                        case iBGE -> () -> { MAR = mar; MDR = mdr; settleFlags(); PC = (N == V) ? target : next; };
+                        default   -> () -> { MAR = mar; MDR = mdr; settleFlags(); PC = (N ^ V) ? target : next; };
+                    };
+                }
+                case iDSR -> {
+                    return () -> {
+                        PC = next; MAR = mar; MDR = mdr;
+                        settleFlags();
+                        io.println( "Status Bits: H:" + H + " N:" + N + " Z:" + Z + " V:" + V + " C:" + C );
+                    };
+                }
+                case iHLT -> {
+                    return () -> { PC = next; MAR = mar; MDR = mdr; H = true; io.flush(); };
                 }
                 default -> {
-                    logger.logError( "\n*** INVALID data size: " + dsz.strValue() );
-                    H = true;
+                    return null;
                 }
             }
         }
+
+        /** set Z and N from the packed bits */
+        private void setZN( int zn ) {
+            Z = (zn & CCR_Z) != 0 ;
+            N = (zn & CCR_N) != 0 ;
+        }
+
+        /** true for a data OR address register */
+        private boolean isRegister( AddressMode mode ) {
+            return mode == AddressMode.DATA_REGISTER_DIRECT || mode == AddressMode.ADDRESS_REGISTER_DIRECT ;
+        }
+
+        /** true if an access to memory at addr of size dsz will NOT give an error */
+        private boolean inMemory( short addr, DataSize dsz ) {
+            return address(addr) >= 0  &&  address(addr) + dsz.sizeValue() <= MemorySize ;
+        }
+
+        /**
+         *  Get an operand the same way as {@link TempReg#fill}
+         *  @return <em>null</em> if mode is NOT handled
+         */
+        private IntSupplier reader( DataSize dsz, AddressMode mode, byte reg, short addr ) {
+            switch( mode ) {
+                case DATA_REGISTER_DIRECT -> {
+                    return switch( dsz ) {
+                        case ByteSize -> () -> DR[reg] & 0xFF ;
+                        case WordSize -> () -> DR[reg] & 0xFFFF ;
+                        default -> () -> DR[reg] ;
+                    };
+                }
+                case ADDRESS_REGISTER_DIRECT -> {
+                    return () -> AR[reg] ;
+                }
+                case RELATIVE_ABSOLUTE -> {
+                    if( !inMemory(addr, dsz) )
+                        return null;
+                    final int at = address( addr );
+                    return switch( dsz ) {
+                        case ByteSize -> () -> loadByte( addr, at );
+                        case WordSize -> () -> loadWord( addr, at );
+                        default -> () -> loadLong( addr, at );
+                    };
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         *  Store an operand the same way as {@link TempReg#write}
+         *  @return <em>null</em> if mode is NOT handled
+         */
+        private IntConsumer writer( DataSize dsz, AddressMode mode, byte reg, short addr ) {
+            switch( mode ) {
+                case DATA_REGISTER_DIRECT -> {
+                    return switch( dsz ) {
+                        case ByteSize -> v -> DR[reg] = ( DR[reg] & 0xFFFFFF00 ) | ( v & 0xFF );
+                        case WordSize -> v -> DR[reg] = ( DR[reg] & 0xFFFF0000 ) | ( v & 0xFFFF );
+                        default -> v -> DR[reg] = v ;
+                    };
+                }
+                case ADDRESS_REGISTER_DIRECT -> {
+                    return v -> AR[reg] = (short)v ;
+                }
+                case RELATIVE_ABSOLUTE -> {
+                    if( !inMemory(addr, dsz) )
+                        return null;
+                    final int at = address( addr );
+                    return switch( dsz ) {
+                        case ByteSize -> v -> storeByte( addr, at, v );
+                        case WordSize -> v -> storeWord( addr, at, v );
+                        default -> v -> storeLong( addr, at, v );
+                    };
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /** the code of a hot {@link Block} */
+    interface CompiledBlock {
+        /** @return number of instructions executed, as {@link Controller#execBlock} */
+        int run();
+    }
+
+    /**
+     *  Second tier of execution: a hot {@link Block} becomes a hidden class, a nestmate of Sim68k, whose run()
+     *  is JVM code for ALL its instructions, written with {@link ClassAssembler} <br>
+     *  the operands are constants in the code, which works directly on DR, AR, the lazy status bits and,
+     *  through {@link #loadWord} and the like, the Memory, so HotSpot compiles a 68k loop as ONE method <br>
+     *  An instruction with NO code here, e.g. DSR OR one left to its micro-program, calls its {@link CompiledOp}
+     *  from a final field of its own. PC, MAR and MDR are written ONLY where the Block may stop:
+     *  after a call, a write to memory AND the last instruction
+     */
+    class BlockCompiler implements ClassAssembler.Opcodes {
+        /** the locals of run(): the code, the machine, then source, destination, result and a temporary */
+        private static final int THIS = 0, CPU = 1, S = 2, D = 3, R = 4, T = 5 ;
+
+        private static final String SIM = "Sim68k", BLOCK = "LSim68k$Block;", OP = "Sim68k$CompiledOp" ;
+
+        /**
+         *  @return the compiled code of blk, OR <em>null</em> if its code would be too long for the JIT
+         *          OR the JVM refuses it: the Block keeps its bound Steps
+         */
+        CompiledBlock compile( Block blk ) {
+            ArrayList<CompiledOp> calls = new ArrayList<>();
+            try {
+                byte[] bytes = assemble( blk, calls );
+                if( bytes == null )
+                    return null;
+                Class<?> code = MethodHandles.lookup()
+                                             .defineHiddenClass( bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE )
+                                             .lookupClass();
+                return (CompiledBlock)code.getDeclaredConstructor( Sim68k.class, Block.class, CompiledOp[].class )
+                                          .newInstance( Sim68k.this, blk, calls.toArray(new CompiledOp[0]) );
+            }
+            catch( ReflectiveOperationException | LinkageError e ) {
+                logger.warning( "CANNOT compile the Block at " + blk.start + ": " + e );
+                return null;
+            }
+        }
+
+        /**
+         *  @param calls gets the ops called from the code, in the order of their fields
+         *  @return the class file of the code of blk, OR <em>null</em> if its run() would be too long for the JIT
+         */
+        private byte[] assemble( Block blk, ArrayList<CompiledOp> calls ) {
+            ClassAssembler ca = new ClassAssembler( "Sim68kBlock_" + Integer.toHexString(blk.start),
+                                                    "java/lang/Object", "Sim68k$CompiledBlock" );
+            String self = ca.name();
+            ca.field( ACC_PRIVATE | ACC_FINAL, "cpu", "LSim68k;" );
+            ca.field( ACC_PRIVATE | ACC_FINAL, "blk", BLOCK );
+
+            ClassAssembler.Code c = ca.method( ACC_PUBLIC, "run", "()I", 6, self, SIM, "I", "I", "I", "I" );
+            c.local( ALOAD, THIS ).field( GETFIELD, self, "cpu", "LSim68k;" ).local( ASTORE, CPU );
+            for( int v = S; v <= T; v++ )
+                c.push( 0 ).local( ISTORE, v );
+            Controller.Step[] steps = blk.steps ;
+            for( int i = 0; i < steps.length; i++ ) {
+                Controller.Step st = steps[i];
+                if( st.bound && emits(st.di) ) {
+                    boolean writes = writesMemory( st.di );
+                    if( writes || i == steps.length - 1 )
+                        fetched( c, st );
+                    emit( c, st );
+                    if( writes )
+                        mayStop( c, self, i + 1 );
+                }
+                else {
+                    String field = "op" + calls.size();
+                    ca.field( ACC_PRIVATE | ACC_FINAL, field, "L" + OP + ";" );
+                    calls.add( st.op );
+                    c.local( ALOAD, THIS ).field( GETFIELD, self, field, "L" + OP + ";" ).invoke( INVOKEINTERFACE, OP, "run", "()V" );
+                    mayStop( c, self, i + 1 );
+                }
+            }
+            c.push( steps.length ).op( IRETURN ).end();
+            if( c.size() > ClassAssembler.HUGE_METHOD )
+                return null;
+
+            ClassAssembler.Code init = ca.method( ACC_PUBLIC, "<init>", "(LSim68k;" + BLOCK + "[L" + OP + ";)V", 4,
+                                                  self, SIM, BLOCK.substring(1, BLOCK.length() - 1), "[L" + OP + ";" );
+            init.local( ALOAD, THIS ).invoke( INVOKESPECIAL, "java/lang/Object", "<init>", "()V" );
+            init.local( ALOAD, THIS ).local( ALOAD, 1 ).field( PUTFIELD, self, "cpu", "LSim68k;" );
+            init.local( ALOAD, THIS ).local( ALOAD, 2 ).field( PUTFIELD, self, "blk", BLOCK );
+            for( int k = 0; k < calls.size(); k++ )
+                init.local( ALOAD, THIS ).local( ALOAD, 3 ).push( k ).op( AALOAD ).field( PUTFIELD, self, "op" + k, "L" + OP + ";" );
+            init.op( RETURN ).end();
+            return ca.toBytes();
+        }
+
+        /** true if there is code here for di, once {@link StepBinder} has bound it */
+        private boolean emits( DecodedInstr di ) {
+            return switch( di.opId ) {
+                case iADD, iSUB, iCMP, iADDQ, iSUBQ, iMULS, iNEG, iNOT, iCLR, iAND, iOR, iEOR,
+                     iLSL, iLSR, iROL, iROR, iTST, iMOV, iMOVQ, iMOVA,
+                     iBRA, iBVS, iBEQ, iBCS, iBGE, iBLE -> true;
+                default -> false;
+            };
+        }
+
+        /** true if di writes its result to memory, which may change the code of a Block */
+        private boolean writesMemory( DecodedInstr di ) {
+            return switch( di.opId ) {
+                case iNEG, iNOT, iCLR -> di.opdM1 == AddressMode.RELATIVE_ABSOLUTE ;
+                case iADD, iSUB, iADDQ, iSUBQ, iMULS, iAND, iOR, iEOR, iLSL, iLSR, iROL, iROR, iMOV ->
+                        di.opdM2 == AddressMode.RELATIVE_ABSOLUTE ;
+                default -> false;
+            };
+        }
+
+        /** return count if the machine halted OR the code of the Block was changed */
+        private void mayStop( ClassAssembler.Code c, String self, int count ) {
+            ClassAssembler.Label stop = c.label(), go = c.label();
+            c.local( ALOAD, CPU ).field( GETFIELD, SIM, "H", "Z" ).jump( IFNE, stop );
+            c.local( ALOAD, THIS ).field( GETFIELD, self, "blk", BLOCK ).field( GETFIELD, "Sim68k$Block", "valid", "Z" ).jump( IFNE, go );
+            c.place( stop ).push( count ).op( IRETURN );
+            c.place( go );
+        }
+
+        /** PC, MAR and MDR as after the fetch of st */
+        private void fetched( ClassAssembler.Code c, Controller.Step st ) {
+            c.local( ALOAD, CPU ).push( st.nextPC ).field( PUTFIELD, SIM, "PC", "S" );
+            c.local( ALOAD, CPU ).push( st.lastMAR ).field( PUTFIELD, SIM, "MAR", "S" );
+            c.local( ALOAD, CPU ).push( st.lastMDR ).field( PUTFIELD, SIM, "MDR", "I" );
+        }
+
+        /** the code of st, the same as its bound op */
+        private void emit( ClassAssembler.Code c, Controller.Step st ) {
+            final DecodedInstr di = st.di ;
+            final DataSize dsz = di.DS ;
+            switch( di.opId ) {
+                case iADD, iSUB, iCMP -> {
+                    read( c, S, dsz, di.opdM1, di.opdR1, st.addr1 );
+                    read( c, D, dsz, di.opdM2, di.opdR2, st.addr2 );
+                    c.local( ILOAD, D ).local( ILOAD, S ).op( di.opId == iADD ? IADD : ISUB ).local( ISTORE, R );
+                    flags( c, di.opId == iADD ? FLAGS_ADD : FLAGS_SUB, dsz );
+                    if( di.opId != iCMP )
+                        write( c, R, dsz, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iADDQ, iSUBQ -> {
+                    c.push( di.opcData ).local( ISTORE, S );
+                    read( c, D, dsz, di.opdM2, di.opdR2, st.addr2 );
+                    c.local( ILOAD, D ).local( ILOAD, S ).op( di.opId == iADDQ ? IADD : ISUB ).local( ISTORE, R );
+                    flags( c, di.opId == iADDQ ? FLAGS_ADD : FLAGS_SUB, dsz );
+                    write( c, R, dsz, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iMULS -> {
+                    read( c, S, dsz, di.opdM1, di.opdR1, st.addr1 );
+                    read( c, D, dsz, di.opdM2, di.opdR2, st.addr2 );
+                    c.local( ILOAD, D ).op( I2S ).local( ILOAD, S ).op( I2S ).op( IMUL ).local( ISTORE, R );
+                    settle( c );
+                    zn( c, 16 );
+                    clear( c, "V" );
+                    clear( c, "C" );
+                    write( c, R, DataSize.LongSize, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iNEG, iNOT -> {
+                    read( c, D, dsz, di.opdM1, di.opdR1, st.addr1 );
+                    if( di.opId == iNEG )
+                        c.local( ILOAD, D ).op( INEG ).local( ISTORE, R );
+                    else
+                        c.local( ILOAD, D ).push( -1 ).op( IXOR ).local( ISTORE, R );
+                    c.push( 0 ).local( ISTORE, S );
+                    flags( c, di.opId == iNEG ? FLAGS_NEG : FLAGS_LOGIC, dsz );
+                    write( c, R, dsz, di.opdM1, di.opdR1, st.addr1 );
+                }
+                case iCLR -> {
+                    c.push( 0 ).local( ISTORE, S ).push( 0 ).local( ISTORE, D ).push( 0 ).local( ISTORE, R );
+                    flags( c, FLAGS_LOGIC, dsz );
+                    write( c, R, dsz, di.opdM1, di.opdR1, st.addr1 );
+                }
+                case iAND, iOR, iEOR -> {
+                    read( c, S, dsz, di.opdM1, di.opdR1, st.addr1 );
+                    read( c, D, dsz, di.opdM2, di.opdR2, st.addr2 );
+                    c.local( ILOAD, D ).local( ILOAD, S ).op( di.opId == iAND ? IAND : di.opId == iOR ? IOR : IXOR ).local( ISTORE, R );
+                    flags( c, FLAGS_LOGIC, dsz );
+                    write( c, R, dsz, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iLSL, iLSR, iROL, iROR -> {
+                    final int bits = 8 * dsz.sizeValue() ;
+                    final int n = (di.opId == iLSL || di.opId == iLSR) ? di.opcData : di.opcData % bits ;
+                    settle( c );
+                    read( c, D, dsz, di.opdM2, di.opdR2, st.addr2 );
+                    c.local( ILOAD, D ).push( n );
+                    switch( di.opId ) {
+                        case iLSL -> c.op( ISHL );
+                        case iLSR -> c.op( IUSHR );
+                        case iROL -> c.push( bits ).invoke( INVOKESTATIC, SIM, "rol", "(III)I" );
+                        default   -> c.push( bits ).invoke( INVOKESTATIC, SIM, "ror", "(III)I" );
+                    }
+                    c.local( ISTORE, R );
+                    zn( c, topShift(dsz) );
+                    clear( c, "V" );
+                    c.local( ALOAD, CPU ).local( ILOAD, D ).push( n );
+                    switch( di.opId ) {
+                        case iLSL -> c.push( bits ).invoke( INVOKESTATIC, SIM, "lslCarry", "(III)Z" );
+                        case iROL -> c.push( bits ).invoke( INVOKESTATIC, SIM, "rolCarry", "(III)Z" );
+                        default   -> c.invoke( INVOKESTATIC, SIM, "rightCarry", "(II)Z" );
+                    }
+                    c.field( PUTFIELD, SIM, "C", "Z" );
+                    write( c, R, dsz, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iTST -> {
+                    read( c, D, dsz, di.opdM1, di.opdR1, st.addr1 );
+                    c.push( 0 ).local( ISTORE, S ).local( ILOAD, D ).local( ISTORE, R );
+                    flags( c, FLAGS_LOGIC, dsz );
+                }
+                case iMOV -> {
+                    read( c, S, dsz, di.opdM1, di.opdR1, st.addr1 );
+                    write( c, S, dsz, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iMOVQ -> {
+                    c.push( 0 ).local( ISTORE, S ).push( di.opcData ).local( ISTORE, D ).push( di.opcData ).local( ISTORE, R );
+                    flags( c, FLAGS_LOGIC, dsz );
+                    write( c, R, dsz, di.opdM2, di.opdR2, st.addr2 );
+                }
+                case iMOVA -> {
+                    c.local( ALOAD, CPU ).field( GETFIELD, SIM, "AR", "[S" ).push( di.opdR2 ).push( st.addr1 ).op( SASTORE );
+                }
+                case iBRA -> {
+                    c.local( ALOAD, CPU ).push( st.addr1 ).field( PUTFIELD, SIM, "PC", "S" );
+                }
+                default -> { // Bcc: PC is already the next instruction
+                    settle( c );
+                    ClassAssembler.Label next = c.label();
+                    switch( di.opId ) {
+                        case iBVS -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "V", "Z" ).jump( IFEQ, next );
+                        case iBEQ -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "Z", "Z" ).jump( IFEQ, next );
+                        case iBCS -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "C", "Z" ).jump( IFEQ, next );
+                        case iBGE -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "N", "Z" )
+                                      .local( ALOAD, CPU ).field( GETFIELD, SIM, "V", "Z" ).jump( IF_ICMPNE, next );
+                        default   -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "N", "Z" )
+                                      .local( ALOAD, CPU ).field( GETFIELD, SIM, "V", "Z" ).jump( IF_ICMPEQ, next );
+                    }
+                    c.local( ALOAD, CPU ).push( st.addr1 ).field( PUTFIELD, SIM, "PC", "S" );
+                    c.place( next );
+                }
+            }
+        }
+
+        /** local v = an operand, the same as {@link StepBinder} reads it */
+        private void read( ClassAssembler.Code c, int v, DataSize dsz, AddressMode mode, byte reg, short addr ) {
+            switch( mode ) {
+                case DATA_REGISTER_DIRECT -> {
+                    c.local( ALOAD, CPU ).field( GETFIELD, SIM, "DR", "[I" ).push( reg ).op( IALOAD );
+                    if( dsz != DataSize.LongSize )
+                        c.push( dsz == DataSize.ByteSize ? 0xFF : 0xFFFF ).op( IAND );
+                }
+                case ADDRESS_REGISTER_DIRECT -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "AR", "[S" ).push( reg ).op( SALOAD );
+                default -> c.local( ALOAD, CPU ).push( addr ).push( address(addr) )
+                            .invoke( INVOKEVIRTUAL, SIM, "load" + sizeName(dsz), "(SI)I" );
+            }
+            c.local( ISTORE, v );
+        }
+
+        /** store local v in an operand, the same as {@link StepBinder} writes it */
+        private void write( ClassAssembler.Code c, int v, DataSize dsz, AddressMode mode, byte reg, short addr ) {
+            switch( mode ) {
+                case DATA_REGISTER_DIRECT -> {
+                    c.local( ALOAD, CPU ).field( GETFIELD, SIM, "DR", "[I" ).push( reg );
+                    if( dsz == DataSize.LongSize )
+                        c.local( ILOAD, v );
+                    else {
+                        int low = (dsz == DataSize.ByteSize) ? 0xFF : 0xFFFF ;
+                        c.local( ALOAD, CPU ).field( GETFIELD, SIM, "DR", "[I" ).push( reg ).op( IALOAD ).push( ~low ).op( IAND )
+                         .local( ILOAD, v ).push( low ).op( IAND ).op( IOR );
+                    }
+                    c.op( IASTORE );
+                }
+                case ADDRESS_REGISTER_DIRECT -> c.local( ALOAD, CPU ).field( GETFIELD, SIM, "AR", "[S" ).push( reg )
+                                                 .local( ILOAD, v ).op( I2S ).op( SASTORE );
+                default -> c.local( ALOAD, CPU ).push( addr ).push( address(addr) ).local( ILOAD, v )
+                            .invoke( INVOKEVIRTUAL, SIM, "store" + sizeName(dsz), "(SII)V" );
+            }
+        }
+
+        /** "Byte", "Word" OR "Long" */
+        private String sizeName( DataSize dsz ) {
+            return switch( dsz ) {
+                case ByteSize -> "Byte";
+                case WordSize -> "Word";
+                default -> "Long";
+            };
+        }
+
+        /** the same as {@link #recordFlags} with the locals S, D and R */
+        private void flags( ClassAssembler.Code c, byte op, DataSize dsz ) {
+            c.local( ALOAD, CPU ).push( op ).field( PUTFIELD, SIM, "flagsOp", "B" );
+            c.local( ALOAD, CPU ).field( GETSTATIC, "Sim68k$DataSize", dsz.name(), "LSim68k$DataSize;" )
+             .field( PUTFIELD, SIM, "flagsDS", "LSim68k$DataSize;" );
+            c.local( ALOAD, CPU ).local( ILOAD, S ).field( PUTFIELD, SIM, "flagsS", "I" );
+            c.local( ALOAD, CPU ).local( ILOAD, D ).field( PUTFIELD, SIM, "flagsD", "I" );
+            c.local( ALOAD, CPU ).local( ILOAD, R ).field( PUTFIELD, SIM, "flagsR", "I" );
+            ClassAssembler.Label lazy = c.label();
+            c.local( ALOAD, CPU ).field( GETFIELD, SIM, "lazyFlags", "Z" ).jump( IFNE, lazy );
+            settle( c );
+            c.place( lazy );
+        }
+
+        private void settle( ClassAssembler.Code c ) {
+            c.local( ALOAD, CPU ).invoke( INVOKEVIRTUAL, SIM, "settleFlags", "()V" );
+        }
+
+        /** Z and N from the local R moved up by top, as {@link StepBinder} sets them */
+        private void zn( ClassAssembler.Code c, int top ) {
+            c.local( ILOAD, R ).push( top ).op( ISHL ).invoke( INVOKESTATIC, SIM, "ccrZN", "(I)I" ).local( ISTORE, T );
+            c.local( ALOAD, CPU ).local( ILOAD, T ).push( Integer.numberOfTrailingZeros(CCR_Z) ).op( ISHR ).push( 1 ).op( IAND )
+             .field( PUTFIELD, SIM, "Z", "Z" );
+            c.local( ALOAD, CPU ).local( ILOAD, T ).push( Integer.numberOfTrailingZeros(CCR_N) ).op( ISHR ).push( 1 ).op( IAND )
+             .field( PUTFIELD, SIM, "N", "Z" );
+        }
+
+        /** a status bit = false */
+        private void clear( ClassAssembler.Code c, String bit ) {
+            c.local( ALOAD, CPU ).push( 0 ).field( PUTFIELD, SIM, bit, "Z" );
+        }
     }
 
     /** simulates fetch and execute */
@@ -634,11 +2214,10 @@ class Sim68k {
             TMPS = new TempReg("Source");
             TMPR = new TempReg("Result");
         }
-        /** Most Significant Bits of TMPS, TMPD and TMPR */
-        boolean Sm, Dm, Rm ;
-
         /** numeric id for opCodes */
         byte opId;
+        /** address of the current instruction, e.g. for {@link InputLog} */
+        short instrPC ;
         /** number of necessary operands = opCode bit P+1 */
         byte numOprd ;
         /** store data from opCode for Format F2 */
@@ -653,36 +2232,74 @@ class Sim68k {
 
         /**
          *  Generic error verification function, with message display:
-         *  if Cond is False, display an error message (including the OpName)
+         *  if Cond is False, log the error with its code, the PC and the OpName
          *  The Halt bit will also be set if there is an Error.
          */
-        boolean checkCond( boolean Cond, String Message ) {
+        boolean checkCond( boolean Cond, SimError err ) {
             if( Cond )
                 return true ;
-            logger.logError("'" + Message + "' at PC = " + (PC-2) + " for operation " + Mnemo[opId], 1);
-            H = true ; // program will halt
+            fail( err, "" );
             return false ;
         }
 
-        /** Fetch the OpCode from memory */
+        /** Fetch the OpCode from memory and decode it from {@link #DecodeTable} */
         void fetchOpCode() {
-            MAR = PC ;
-            logger.info("at mem address = " + MAR);
+            short pc = PC ;
+            instrPC = pc ;
+            if( logger.infoOn() )
+                logger.info("at mem address = " + pc);
             PC += 2 ;
-            mem.access( DataSize.WordSize, READ );
-            logger.info( "MDR = " + intHexBin(MDR) );
-            opCode = (short)getWord( MDR, LEAST ); // get LSW from MDR
+            opCode = (short)mem.fetch( pc, DataSize.WordSize ); // get LSW from MDR
+            if( logger.infoOn() )
+                logger.info( "MDR = " + intHexBin(MDR) );
+
+            DecodedInstr di = DecodeTable[ opCode & 0xFFFF ];
+            if( di == null ) {
+                decodeInstr();
+                return;
+            }
+            setDecoded( di );
+            opCycles = di.cycles ;
+            takenCycles = di.takenCycles ;
+
+            if( logger.configOn() ) {
+                logger.config( "OpCode " + intHex(opCode) + " at PC = " + (PC-2)
+                               + " :\n\tOpId = " + Mnemo[opId] + ", size = " + DS.strValue() + ", numOprnd = " + numOprd );
+                if( !di.formatF1 )
+                    logger.info( "Format F2: opcData = " + intHexBin(opcData) );
+                logger.config("\tM1 = " + opdM1 + ", M2 = " + opdM2 + "; R1 = " + byteInHex(opdR1) + ", R2 = " + byteInHex(opdR2));
+            }
         }
 
-        /** Update the fields OpId, DS, numOprd, M1, R1, M2, R2 and opcData */
+        /** Update the fields OpId, DS, numOprd, M1, R1, M2, R2 and opcData from a {@link DecodeTable} entry */
+        void setDecoded( DecodedInstr di ) {
+            DS = di.DS ;
+            opId = di.opId ;
+            numOprd = di.numOprd ;
+            opdM2 = di.opdM2 ;
+            opdR2 = di.opdR2 ;
+            if( di.formatF1 ) {
+                opdM1 = di.opdM1 ;
+                opdR1 = di.opdR1 ;
+            }
+            else
+                opcData = di.opcData ;
+        }
+
+        /**
+         *  Update the fields OpId, DS, numOprd, M1, R1, M2, R2 and opcData <br>
+         *  <em>only</em> needed for the OpCodes that have no entry in {@link #DecodeTable}
+         */
         void decodeInstr() {
-            logger.info( "OpCode = " + Integer.toBinaryString(opCode) );
+            if( logger.infoOn() )
+                logger.info( "OpCode = " + Integer.toBinaryString(opCode) );
             DS = getDataSize( getBits(opCode,9,10) );
             opId = (byte)getBits( opCode, 11, 15 );
             numOprd = (byte)( getBits(opCode,8,8) + 1 );
 
-            logger.config( "OpCode " + intHex(opCode) + " at PC = " + (PC-2)
-                           + " :\n\tOpId = " + Mnemo[opId] + ", size = " + DS.strValue() + ", numOprnd = " + numOprd );
+            if( logger.configOn() )
+                logger.config( "OpCode " + intHex(opCode) + " at PC = " + (PC-2)
+                               + " :\n\tOpId = " + Mnemo[opId] + ", size = " + DS.strValue() + ", numOprnd = " + numOprd );
 
             if( numOprd > 0 ) { // SHOULD ALWAYS BE TRUE!
                 opdM2 = getAddressMode( getBits(opCode,1,3) );
@@ -699,100 +2316,61 @@ class Sim68k {
                     }
                 else { // Format F2
                     opcData = (byte)getBits( opCode, 4, 7 );
-                    logger.info( "Format F2: opcData = " + intHexBin(opcData) );
+                    if( logger.infoOn() )
+                        logger.info( "Format F2: opcData = " + intHexBin(opcData) );
                 }
             }
             else {
-                logger.logError( "INVALID number of operands '" + numOprd + "' at PC = " + (PC-2) );
-                H = true ;
+                fail( SimError.INVALID_OPERANDS, Integer.toString(numOprd) );
             }
-            logger.config("\tM1 = " + opdM1 + ", M2 = " + opdM2 + "; R1 = " + byteInHex(opdR1) + ", R2 = " + byteInHex(opdR2));
+            if( logger.configOn() )
+                logger.config("\tM1 = " + opdM1 + ", M2 = " + opdM2 + "; R1 = " + byteInHex(opdR1) + ", R2 = " + byteInHex(opdR2));
+            opCycles = cycleCost( opId, DS, opdM1, opdM2, opcData, false );
+            takenCycles = cycleCost( opId, DS, opdM1, opdM2, opcData, true );
         }
 
+        /** 68000 clock cycles of the instruction fetched last, when it does NOT jump OR when it does */
+        int opCycles, takenCycles ;
+
         /** Fetch the operands, according to their number (numOprd) and addressing modes (M1 or M2) */
         void fetchOperands() {
-            logger.info(numOprd + " operands at PC = " + (PC-2) + ": M1 = " + opdM1 + ", M2 = " + opdM2 );
+            if( logger.infoOn() )
+                logger.info(numOprd + " operands at PC = " + (PC-2) + ": M1 = " + opdM1 + ", M2 = " + opdM2 );
 
             // Fetch the address of 1st operand (in OpAddr1)
             if( formatF1(opId)  &&  opdM1 == AddressMode.RELATIVE_ABSOLUTE ) {
-                MAR = PC ;
-                mem.access( DataSize.WordSize, READ );
-                opAddr1 = (short)getWord( MDR, LEAST ); // get LSW of MDR
+                opAddr1 = (short)mem.fetch( PC, DataSize.WordSize ); // get LSW of MDR
                 PC += 2 ;
             }
 
             // Fetch the address of 2nd operand, if F1 & 2 operands.
             // OR, operand of an instruction with format F2 put in OpAddr2
             if( opdM2 == AddressMode.RELATIVE_ABSOLUTE ) {
-                MAR = PC ;
-                mem.access( DataSize.WordSize, READ );
-                opAddr2 = (short)getWord( MDR, LEAST ); // get LSW of MDR
+                opAddr2 = (short)mem.fetch( PC, DataSize.WordSize ); // get LSW of MDR
                 PC += 2 ;
             }
 
             // Check invalid number of operands.
             if( numOprd == 2  &&  !formatF1(opId) ) {
-                logger.logError( "INVALID number of operands for " + Mnemo[opId] + " at PC = " + (PC-2) );
-                H = true ;
+                fail( SimError.INVALID_OPERANDS, Integer.toString(numOprd) );
             }
         }
 
         /** set Status bits Z (zero) and N (negative) according to the value in tr */
         void setZN( TempReg tr ) {
-            int trVal = tr.get();
-            switch (DS) {
-                case ByteSize -> {
-                    short bzw = getBits( (short)getWord(trVal,LEAST), 0, 7 );
-                    Z = (bzw == 0);
-                    short bnw = getBits( (short)getWord(trVal,LEAST), 7, 7 );
-                    N = (bnw == 1);
-                }
-                case WordSize -> {
-                    short wzw = getBits( (short)getWord(trVal,LEAST), 0, 15 );
-                    Z = (wzw == 0);
-                    short wnw = getBits( (short)getWord(trVal,LEAST), 15, 15 );
-                    N = (wnw == 1);
-                }
-                case LongSize -> {
-                    Z = (trVal == 0);
-                    short lnw = getBits( (short)getWord(trVal, MOST), 15, 15 );
-                    N = (lnw == 1);
-                }
-                default -> {
-                    logger.logError( "INVALID data size '" + DS + "' at PC = " + (PC-2) );
-                    H = true;
-                }
-            }
-        }
-
-        /**
-         *  Get the most significant bits of TMPD, TMPS and TMPR <br>
-         *  The calculations for V (overflow) and C (carry) use these values
-         */
-        void setSmDmRm( TempReg trS, TempReg trD, TempReg trR ) {
-            logger.fine( "DS = " + DS.strValue() );
-            byte mostSigBit ; // wordSize
-            switch( DS ) {
-                case ByteSize -> mostSigBit =  7 ;
-                case WordSize -> mostSigBit = 15 ; // wordSize
-                case LongSize -> mostSigBit = 31 ;
-                default -> {
-                    logger.logError( "INVALID data size '" + DS + "' at PC = " + (PC-2) );
-                    H = true ;
-                    return ;
-                }
-            }
-            Sm = getBits( trS.get(), mostSigBit, mostSigBit ) == 1 ;
-            Dm = getBits( trD.get(), mostSigBit, mostSigBit ) == 1 ;
-            Rm = getBits( trR.get(), mostSigBit, mostSigBit ) == 1 ;
+            int zn = ccrZN( tr.get() << topShift(DS) );
+            Z = (zn & CCR_Z) != 0 ;
+            N = (zn & CCR_N) != 0 ;
         }
 
         /** The execution of each instruction is done via its micro-program */
         void execInstr() {
-            logger.config( Mnemo[opId] + "." + DS.strValue()
-                            + ": OpAd1 = " + opAddr1 + ", OpAd2 = " + opAddr2
-                            + "\n\tM1 = " + opdM1 + ", R1 = " + opdR1 + ", M2 = " + opdM2 + ", R2 = " + opdR2 );
-            logger.info( "INIT: D[0] = " + intHexBin(DR[0]) + "; D[1] = " + intHexBin(DR[1]) );
+            if( logger.configOn() )
+                logger.config( Mnemo[opId] + "." + DS.strValue()
+                                + ": OpAd1 = " + opAddr1 + ", OpAd2 = " + opAddr2
+                                + "\n\tM1 = " + opdM1 + ", R1 = " + opdR1 + ", M2 = " + opdM2 + ", R2 = " + opdR2 );
+            if( logger.infoOn() )
+                logger.info( "INIT: D[0] = " + intHexBin(DR[0]) + "; D[1] = " + intHexBin(DR[1]) );
             /* Execute an instruction according to the OpId from the current opCode
                Use a CASE structure where each case corresponds to an instruction & its micro-program  */
             switch( opId ) {
@@ -801,12 +2379,9 @@ class Sim68k {
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.add( TMPS, TMPD );
-                    logger.info( "ADD: " + TMPR.dsp() + " = " + TMPS.dsp() + " + " + TMPD.dsp() );
-                    setZN( TMPR );
-                    setSmDmRm( TMPS, TMPD, TMPR );
-                    V = ( Sm & Dm & !Rm ) | ( !Sm & !Dm & Rm );
-                    logger.fine( "V = " + V );
-                    C = ( Sm & Dm ) | ( !Rm & Dm ) | ( Sm & !Rm );
+                    if( logger.infoOn() )
+                        logger.info( "ADD: " + TMPR.dsp() + " = " + TMPS.dsp() + " + " + TMPD.dsp() );
+                    recordFlags( FLAGS_ADD, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break ;
                 // add quick
@@ -814,11 +2389,9 @@ class Sim68k {
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPS.fillWithData( DS, opcData );
                     TMPR.add( TMPD, TMPS );
-                    logger.info( "ADDQ: " + TMPR.dsp() + " = " + TMPD.dsp() + " + " + TMPS.dsp() );
-                    setZN( TMPR );
-                    setSmDmRm( TMPS, TMPD, TMPR );
-                    V = ( Sm & Dm & !Rm ) | ( !Sm & !Dm & Rm );
-                    C = ( Sm & Dm ) | ( !Rm & Dm ) | ( Sm & !Rm );
+                    if( logger.infoOn() )
+                        logger.info( "ADDQ: " + TMPR.dsp() + " = " + TMPD.dsp() + " + " + TMPS.dsp() );
+                    recordFlags( FLAGS_ADD, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // subtraction
@@ -826,11 +2399,9 @@ class Sim68k {
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.subtract( TMPD, TMPS );
-                    logger.info( "SUB: " + TMPR.dsp() + " = " + TMPD.dsp() + " - " + TMPS.dsp() );
-                    setZN( TMPR );
-                    setSmDmRm( TMPS, TMPD, TMPR );
-                    V = ( !Sm & Dm & !Rm ) | ( Sm & !Dm & Rm );
-                    C = ( Sm & !Dm ) | ( Rm & !Dm ) | ( Sm & Rm );
+                    if( logger.infoOn() )
+                        logger.info( "SUB: " + TMPR.dsp() + " = " + TMPD.dsp() + " - " + TMPS.dsp() );
+                    recordFlags( FLAGS_SUB, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // sub quick
@@ -838,24 +2409,24 @@ class Sim68k {
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPS.fillWithData( DS, opcData );
                     TMPR.subtract( TMPD, TMPS );
-                    logger.info( "SUBQ: " + TMPR.dsp() + " = " + TMPD.dsp() + " - " + TMPS.dsp() );
-                    setZN( TMPR );
-                    setSmDmRm( TMPS, TMPD, TMPR );
-                    V = ( !Sm & Dm & !Rm ) | ( Sm & !Dm & Rm );
-                    C = ( Sm & !Dm ) | ( Rm & !Dm ) | ( Sm & Rm );
+                    if( logger.infoOn() )
+                        logger.info( "SUBQ: " + TMPR.dsp() + " = " + TMPD.dsp() + " - " + TMPS.dsp() );
+                    recordFlags( FLAGS_SUB, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // signed multiplication
                 case iMULS:
-                    if( checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) ) {
+                    if( checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) ) {
                         TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                         TMPD.fill( opAddr2, DS, opdM2, opdR2 );
-                        if( getBits( (short)TMPS.get(), 15, 15) == 1 )
+                        if( (TMPS.get() & 0x8000) != 0 )
                             TMPS.set( TMPS.get() | 0xFFFF0000 );
-                        if( getBits( (short)TMPD.get(), 15, 15) == 1 )
+                        if( (TMPD.get() & 0x8000) != 0 )
                             TMPD.set( TMPD.get() | 0xFFFF0000 );
                         TMPR.multiply( TMPD, TMPS );
-                        logger.info( "MULS: " + TMPR.dsp() + " = " + TMPD.dsp() + " * " + TMPS.dsp() );
+                        settleFlags();
+                        if( logger.infoOn() )
+                            logger.info( "MULS: " + TMPR.dsp() + " = " + TMPD.dsp() + " * " + TMPS.dsp() );
                         setZN( TMPR );
                         V = false;
                         C = false;
@@ -866,44 +2437,58 @@ class Sim68k {
                 case iDIVS:
                     logger.info( "START DIVS" );
                     boolean flag = false ;
-                    if( checkCond( DS == DataSize.LongSize, "Invalid Data Size" ) ) {
+                    if( checkCond( DS == DataSize.LongSize, SimError.INVALID_DATA_SIZE ) ) {
                         TMPS.fill( opAddr1, DataSize.WordSize, opdM1, opdR1 ); // TMPS supposed to be a Word so only use the LSW
-                        if( checkCond( TMPS.get() != 0, "Division by Zero" ) ) {
+                        if( checkCond( TMPS.get() != 0, SimError.DIVISION_BY_ZERO ) ) {
                             TMPD.fill( opAddr2, DS, opdM2, opdR2 );
-                            logger.info( "DIVS.A: " + TMPD.dsp() + "; " + TMPS.dsp() );
+                            if( logger.infoOn() )
+                                logger.info( "DIVS.A: " + TMPD.dsp() + "; " + TMPS.dsp() );
                             int lim = TMPD.get() / TMPS.get();
+                            settleFlags();
                             V = ( lim < -32768 ) | ( lim > 32767 ); // i.e. < signed MIN  or  > signed MAX
-                            logger.info( "lim = " + lim + "; V = " + V );
+                            if( logger.infoOn() )
+                                logger.info( "lim = " + lim + "; V = " + V );
                             int edge = 0x8000; // [32768] i.e. half unsigned MAX
-                            logger.info( "edge = " + edge + "[" + HEX_MARKER + Integer.toHexString(edge) + "]" );
+                            if( logger.infoOn() )
+                                logger.info( "edge = " + edge + "[" + HEX_MARKER + Integer.toHexString(edge) + "]" );
                             if( TMPS.get() > edge ) {
                                 flag = true;
                                 TMPS.set( (TMPS.get() ^ 0xFFFF) + 1 ); // 2C of Word TMPS
                                 TMPD.set( ~TMPD.get() + 1 ); // 2C
-                                logger.info( "DIVS.B: " + TMPD.dsp() + "; " + TMPS.dsp() );
+                                if( logger.infoOn() )
+                                    logger.info( "DIVS.B: " + TMPD.dsp() + "; " + TMPS.dsp() );
                             }
                             // an accurate simulation should only store interim results in TempRegs, but leaving temp variables here for clarity
                             if( TMPD.get() / TMPS.get() == 0  &&  flag ) { // TMPS > TMPD  &&  TMPS > half MAX
                                 TMPD.set( ~TMPD.get() + 1 ); // restore original TMPD
-                                logger.info( TMPD.dsp() );
+                                if( logger.infoOn() )
+                                    logger.info( TMPD.dsp() );
                                 int tmpr_lz = setShort( TMPR.get(), LEAST, (short)0 ); // LSW of TMPR = 0 = (TMPD / TMPS)
-                                logger.info( "div = LSW of " + tmpr_lz + "[" + HEX_MARKER + Integer.toHexString(tmpr_lz) + "]" );
+                                if( logger.infoOn() )
+                                    logger.info( "div = LSW of " + tmpr_lz + "[" + HEX_MARKER + Integer.toHexString(tmpr_lz) + "]" );
                                 short wtmpd_mod_s = (short)(TMPD.get() % TMPS.get()); // mod value as Word
-                                logger.info( "mod = TMPD % TMPS = " + wtmpd_mod_s + "[" + HEX_MARKER + Integer.toHexString(wtmpd_mod_s) + "]" );
+                                if( logger.infoOn() )
+                                    logger.info( "mod = TMPD % TMPS = " + wtmpd_mod_s + "[" + HEX_MARKER + Integer.toHexString(wtmpd_mod_s) + "]" );
                                 TMPR.set( setShort( tmpr_lz, MOST, wtmpd_mod_s ) ); // TMPR: MSW = LSW of mod, LSW = div = 0
-                                logger.info( "DIVS.C: " + TMPR.dsp() + "; " + TMPD.dsp() + "; " + TMPS.dsp() );
+                                if( logger.infoOn() )
+                                    logger.info( "DIVS.C: " + TMPR.dsp() + "; " + TMPD.dsp() + "; " + TMPS.dsp() );
                             }
                             else { // TMPS <= TMPD  ||  TMPS <= half MAX
                                 int wtmps_least = getWord( TMPS.get(), LEAST ); // LSW of TMPS
-                                logger.info( "TMPS LSW = " + wtmps_least + "[" + HEX_MARKER + Integer.toHexString(wtmps_least) + "]" );
+                                if( logger.infoOn() )
+                                    logger.info( "TMPS LSW = " + wtmps_least + "[" + HEX_MARKER + Integer.toHexString(wtmps_least) + "]" );
                                 int tmpd_div_sl = TMPD.get() / wtmps_least ; // div
-                                logger.info( "div = TMPD / TMPS = " + tmpd_div_sl + "[" + HEX_MARKER + Integer.toHexString(tmpd_div_sl) + "]" );
+                                if( logger.infoOn() )
+                                    logger.info( "div = TMPD / TMPS = " + tmpd_div_sl + "[" + HEX_MARKER + Integer.toHexString(tmpd_div_sl) + "]" );
                                 int tmpd_mod_sl = TMPD.get() % wtmps_least ; // mod
-                                logger.info( "mod = TMPD % TMPS = " + tmpd_mod_sl + "[" + HEX_MARKER + Integer.toHexString(tmpd_mod_sl) + "]" );
+                                if( logger.infoOn() )
+                                    logger.info( "mod = TMPD % TMPS = " + tmpd_mod_sl + "[" + HEX_MARKER + Integer.toHexString(tmpd_mod_sl) + "]" );
                                 TMPR.set( setShort( tmpd_div_sl, MOST, (short)tmpd_mod_sl ) ); // TMPR: MSW = LSW of mod, LSW = LSW of div
-                                logger.info( "DIVS.D: " + TMPR.dsp() + "; " + TMPD.dsp() + "; " + TMPS.dsp() );
+                                if( logger.infoOn() )
+                                    logger.info( "DIVS.D: " + TMPR.dsp() + "; " + TMPD.dsp() + "; " + TMPS.dsp() );
                             }
-                            logger.info( "DIVS.final: " + TMPR.dsp() + "; " + TMPD.dsp() + "; " + TMPS.dsp() );
+                            if( logger.infoOn() )
+                                logger.info( "DIVS.final: " + TMPR.dsp() + "; " + TMPD.dsp() + "; " + TMPS.dsp() );
                             setZN( TMPR );
                             C = false ;
                             TMPR.write( opAddr2, DS, opdM2, opdR2 );
@@ -914,27 +2499,20 @@ class Sim68k {
                 case iNEG:
                     TMPD.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPR.set( TMPD.get() * -1 );
-                    setZN( TMPR );
-                    setSmDmRm( TMPS, TMPD, TMPR );
-                    V = Dm & Rm ;
-                    C = Dm | Rm ;
+                    recordFlags( FLAGS_NEG, DS, 0, TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr1, DS, opdM1, opdR1 );
                     break;
                 // clear
                 case iCLR:
                     TMPD.set( 0 );
-                    setZN( TMPD );
-                    V = false;
-                    C = false;
+                    recordFlags( FLAGS_LOGIC, DS, 0, 0, 0 );
                     TMPD.write( opAddr1, DS, opdM1, opdR1 );
                     break;
                 // bitwise
                 case iNOT:
                     TMPD.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPR.set( ~TMPD.get() );
-                    setZN( TMPR );
-                    V = false;
-                    C = false;
+                    recordFlags( FLAGS_LOGIC, DS, 0, TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr1, DS, opdM1, opdR1 );
                     break;
                 // bitwise
@@ -942,10 +2520,9 @@ class Sim68k {
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.set( TMPD.get() & TMPS.get() );
-                    logger.fine( "AND: " + TMPR.dsp() + " = " + TMPD.dsp() + " & " + TMPS.dsp() );
-                    setZN( TMPR );
-                    V = false;
-                    C = false;
+                    if( logger.fineOn() )
+                        logger.fine( "AND: " + TMPR.dsp() + " = " + TMPD.dsp() + " & " + TMPS.dsp() );
+                    recordFlags( FLAGS_LOGIC, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // bitwise
@@ -953,10 +2530,9 @@ class Sim68k {
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.set( TMPD.get() | TMPS.get() );
-                    logger.fine( "OR: " + TMPR.dsp() + " = " + TMPD.dsp() + " | " + TMPS.dsp() );
-                    setZN( TMPR );
-                    V = false;
-                    C = false;
+                    if( logger.fineOn() )
+                        logger.fine( "OR: " + TMPR.dsp() + " = " + TMPD.dsp() + " | " + TMPS.dsp() );
+                    recordFlags( FLAGS_LOGIC, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // xor
@@ -964,68 +2540,81 @@ class Sim68k {
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.set( TMPD.get() ^ TMPS.get() );
-                    logger.fine( "EOR: " + TMPR.dsp() + " = " + TMPD.dsp() + " ^ " + TMPS.dsp() );
-                    setZN( TMPR );
-                    V = false;
-                    C = false;
+                    if( logger.fineOn() )
+                        logger.fine( "EOR: " + TMPR.dsp() + " = " + TMPD.dsp() + " ^ " + TMPS.dsp() );
+                    recordFlags( FLAGS_LOGIC, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // shift left
                 case iLSL:
-                    logger.fine( "LSL: opcData = " + opcData );
+                    if( logger.fineOn() )
+                        logger.fine( "LSL: opcData = " + opcData );
+                    settleFlags();
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.set( TMPD.get() << opcData );
-                    logger.fine( TMPR.dsp() );
+                    if( logger.fineOn() )
+                        logger.fine( TMPR.dsp() );
                     setZN( TMPR );
                     V = false;
-                    C = false;
-                    if( opcData > 0 )
-                        C = getBits( (short)TMPD.get(), (DS.sizeValue()*8 - opcData), (DS.sizeValue()*8 - opcData) ) == 1;
+                    if( opcData > 8 * DS.sizeValue() ) // the bit shifted out last is below bit 0
+                        logger.warning( "IMPROPER value for FirstBit = " + (8 * DS.sizeValue() - opcData)
+                                        + " or LastBit = " + (8 * DS.sizeValue() - opcData) );
+                    C = lslCarry( TMPD.get(), opcData, 8 * DS.sizeValue() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // shift right
                 case iLSR:
-                    logger.fine( "LSR: opcData = " + opcData );
+                    if( logger.fineOn() )
+                        logger.fine( "LSR: opcData = " + opcData );
+                    settleFlags();
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.set( TMPD.get() >>> opcData );
-                    logger.fine( TMPR.dsp() );
+                    if( logger.fineOn() )
+                        logger.fine( TMPR.dsp() );
                     setZN( TMPR );
                     V = false;
-                    C = (opcData > 0) && getBits( (short)TMPD.get(), opcData-1, opcData-1 ) == 1 ;
+                    C = rightCarry( TMPD.get(), opcData );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // rotate left
                 case iROL:
-                    logger.fine( "ROL: opcData = " + opcData );
+                    if( logger.fineOn() )
+                        logger.fine( "ROL: opcData = " + opcData );
+                    settleFlags();
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     opcData = (byte)( opcData % (8 * DS.sizeValue()) );
-                    logger.fine( "ROL: opcData = " + opcData );
-                    TMPR.set( TMPD.get() << opcData );
-                    logger.fine( TMPR.dsp() );
+                    if( logger.fineOn() )
+                        logger.fine( "ROL: opcData = " + opcData );
                     TMPS.set( TMPD.get() >>> (8 * DS.sizeValue() - opcData) );
-                    logger.fine( TMPS.dsp() );
-                    TMPR.set( setBits(TMPR.get(), (byte)0, (byte)(opcData-1), (short)TMPS.get()) );
-                    logger.info( TMPR.dsp() );
+                    if( logger.fineOn() )
+                        logger.fine( TMPS.dsp() );
+                    if( opcData == 0 )
+                        logger.warning( "IMPROPER value for first = 0 or last = -1" );
+                    TMPR.set( rol(TMPD.get(), opcData, 8 * DS.sizeValue()) );
+                    if( logger.infoOn() )
+                        logger.info( TMPR.dsp() );
                     setZN( TMPR );
                     V = false;
-                    C = (opcData > 0)
-                        && getBits( (short)TMPD.get(), (DS.sizeValue()*8)-opcData, 8 * DS.sizeValue() - opcData ) == 1 ;
+                    C = rolCarry( TMPD.get(), opcData, 8 * DS.sizeValue() );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // rotate right
                 case iROR:
-                    logger.fine( "ROR: opcData = " + opcData );
+                    if( logger.fineOn() )
+                        logger.fine( "ROR: opcData = " + opcData );
+                    settleFlags();
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     opcData = (byte)( opcData % (8 * DS.sizeValue()) );
-                    logger.fine( "ROR: opcData = " + opcData );
-                    TMPR.set( TMPD.get() >>> opcData );
-                    logger.fine( TMPR.dsp() );
-                    TMPR.set( setBits( TMPR.get(), (byte)(8 * DS.sizeValue() - opcData),
-                                       (byte)(8 * DS.sizeValue() - 1), (short)TMPD.get() ) );
-                    logger.info( "now " + TMPR.dsp() );
+                    if( logger.fineOn() )
+                        logger.fine( "ROR: opcData = " + opcData );
+                    if( opcData == 0 )
+                        logger.warning( "IMPROPER value for first = " + 8 * DS.sizeValue() + " or last = " + (8 * DS.sizeValue() - 1) );
+                    TMPR.set( ror(TMPD.get(), opcData, 8 * DS.sizeValue()) );
+                    if( logger.infoOn() )
+                        logger.info( "now " + TMPR.dsp() );
                     setZN( TMPR );
                     V = false;
-                    C = (opcData > 0) && ( getBits((short) TMPD.get(), opcData-1, opcData-1) == 1 );
+                    C = rightCarry( TMPD.get(), opcData );
                     TMPR.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // compare
@@ -1033,52 +2622,52 @@ class Sim68k {
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPR.subtract( TMPD, TMPS );
-                    setZN( TMPR );
-                    setSmDmRm( TMPS, TMPD, TMPR );
-                    V = ( !Sm & Dm & !Rm ) | ( Sm & !Dm & Rm );
-                    C = ( Sm & !Dm ) | ( Rm & !Dm ) | ( Sm & Rm );
+                    recordFlags( FLAGS_SUB, DS, TMPS.get(), TMPD.get(), TMPR.get() );
                     break;
                 // test
                 case iTST:
                     TMPD.fill( opAddr1, DS, opdM1, opdR1 );
-                    setZN( TMPD );
-                    V = false ;
-                    C = false ;
+                    recordFlags( FLAGS_LOGIC, DS, 0, TMPD.get(), TMPD.get() );
                     break;
                 // branch
                 case iBRA:
-                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         PC = opAddr1;
                     break;
                 // branch if overflow
                 case iBVS:
-                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                    settleFlags();
+                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         if( V ) PC = opAddr1;
                     break;
                 // branch if equal
                 case iBEQ:
-                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                    settleFlags();
+                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         if( Z ) PC = opAddr1;
                     break;
                 // branch if carry
                 case iBCS:
-                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                    settleFlags();
+                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         if( C ) PC = opAddr1;
                     break;
                 // branch if GTE
                 case iBGE:
-                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                    settleFlags();
+                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         if( N == V ) PC = opAddr1;
                     break;
                 // branch if LTE
                 case iBLE:
-                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                    settleFlags();
+                    if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE, SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         if( (N^V) ) PC = opAddr1;
                     break;
                 // move
@@ -1090,9 +2679,7 @@ class Sim68k {
                 case iMOVQ:
                     TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                     TMPD.fillWithData( DS, opcData );
-                    setZN( TMPD );
-                    V = false;
-                    C = false;
+                    recordFlags( FLAGS_LOGIC, DS, 0, TMPD.get(), TMPD.get() );
                     TMPD.write( opAddr2, DS, opdM2, opdR2 );
                     break;
                 // exchange
@@ -1100,11 +2687,12 @@ class Sim68k {
                     if( checkCond(
                             (opdM1 == AddressMode.ADDRESS_REGISTER_DIRECT || opdM1 == AddressMode.DATA_REGISTER_DIRECT)
                               && (opdM2 == AddressMode.ADDRESS_REGISTER_DIRECT || opdM2 == AddressMode.DATA_REGISTER_DIRECT),
-                            "Invalid Addressing Mode" ) ) {
+                            SimError.INVALID_ADDRESS_MODE ) ) {
                         TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                         TMPD.fill( opAddr2, DS, opdM2, opdR2 );
                         TMPS.write( opAddr1, DS, opdM2, opdR2 );
                         TMPD.write( opAddr2, DS, opdM1, opdR1 );
+                        settleFlags();
                         V = false;
                         C = false;
                     }
@@ -1112,59 +2700,71 @@ class Sim68k {
                 // move to address
                 case iMOVA:
                     if( checkCond( opdM1 == AddressMode.RELATIVE_ABSOLUTE  &&  opdM2 == AddressMode.ADDRESS_REGISTER_DIRECT,
-                                   "Invalid Addressing Mode" )
-                            && checkCond( DS == DataSize.WordSize, "Invalid Data Size" ) )
+                                   SimError.INVALID_ADDRESS_MODE )
+                            && checkCond( DS == DataSize.WordSize, SimError.INVALID_DATA_SIZE ) )
                         AR[opdR2] = (short)getWord( opAddr1, LEAST );
                     break;
                 // input
                 case iINP:
-                    System.out.print("Enter a value ");
+                    // a replayed value is NOT asked for
+                    boolean prompt = (inputReplay == null) ;
+                    if( prompt )
+                        io.print("Enter a value ");
                     switch( DS ) {
-                        case ByteSize -> System.out.print( "(" + DataSize.ByteSize.strValue() + ") for " );
-                        case WordSize -> System.out.print( "(" + DataSize.WordSize.strValue() + ") for " );
-                        case LongSize -> System.out.print( "(" + DataSize.LongSize.strValue() + ") for " );
+                        case ByteSize, WordSize, LongSize -> {
+                            if( prompt )
+                                io.print( "(" + DS.strValue() + ") for " );
+                        }
                         default -> {
-                            logger.logError("INVALID data size '" + DS + "' for instruction '" + opId + "' at PC = " + (PC-2));
-                            H = true;
+                            fail( SimError.INVALID_DATA_SIZE, String.valueOf(DS) );
                             return;
                         }
                     }
-                    switch( opdM1 ) {
-                        case DATA_REGISTER_DIRECT -> System.out.print( "the register D" + opdR1 );
-                        case ADDRESS_REGISTER_DIRECT -> System.out.print( "the register A" + opdR1 );
+                    String target = switch( opdM1 ) {
+                        case DATA_REGISTER_DIRECT -> "the register D" + opdR1 ;
+                        case ADDRESS_REGISTER_DIRECT -> "the register A" + opdR1 ;
                         case ADDRESS_REGISTER_INDIRECT, ADDRESS_REGISTER_INDIRECT_PREDEC, ADDRESS_REGISTER_INDIRECT_POSTINC ->
-                                 System.out.print( "the memory address " + AR[opdR1] );
-                        case RELATIVE_ABSOLUTE -> System.out.print( "the memory address " + opAddr1 );
-                        default -> {
-                            logger.logError( "INVALID mode type '" + opdM1 + "' for instruction '"
-                                             + opId + "' at PC = " + (PC-2) );
-                            H = true;
-                            return;
-                        }
+                                 "the memory address " + AR[opdR1] ;
+                        case RELATIVE_ABSOLUTE -> "the memory address " + opAddr1 ;
+                        default -> null ;
+                    };
+                    if( target == null ) {
+                        fail( SimError.INVALID_ADDRESS_MODE, String.valueOf(opdM1) );
+                        return;
+                    }
+                    if( prompt ) {
+                        io.print( target + ": " );
+                        io.flush();
                     }
-                    System.out.print(": ");
                     String inpStr;
                     int radix = 10;
                     long inpl;
                     try {
-                        Scanner inpScanner = new Scanner( System.in );
-                        inpStr = inpScanner.next();
-                        logger.info("input = " + inpStr);
+                        long waitStart = (metrics != null) ? System.nanoTime() : 0L ;
+                        inpStr = (inputReplay != null) ? inputReplay.input( cpu.inputCount(), instrPC ) : io.next();
+                        if( metrics != null )
+                            metrics.inputWait( System.nanoTime() - waitStart );
+                        if( inputRecord != null )
+                            inputRecord.input( cpu.inputCount(), instrPC, inpStr );
+                        if( logger.infoOn() )
+                            logger.info("input = " + inpStr);
                         if( inpStr.charAt(0) == HEX_MARKER ) {
                             radix = 16 ;
                             inpStr = inpStr.substring(1) ;
                         }
                         // Java only has signed numbers, so need a long to accept input like 'FFFFFFFF'
                         inpl = Long.parseLong( inpStr, radix );
-                        logger.info("Long.parseLong(" + inpStr + ", " + radix + ") = " + inpl);
+                        if( logger.infoOn() )
+                            logger.info("Long.parseLong(" + inpStr + ", " + radix + ") = " + inpl);
                     }
                     catch (Exception e) {
-                        logger.logError( e.getMessage() );
-                        H = true;
+                        fail( SimError.INVALID_INPUT, e.getMessage() );
                         return ;
                     }
                     TMPD.set( (int)inpl );
-                    logger.info( TMPD.dsp() );
+                    if( logger.infoOn() )
+                        logger.info( TMPD.dsp() );
+                    settleFlags();
                     setZN( TMPD );
                     C = false;
                     V = false;
@@ -1174,174 +2774,720 @@ class Sim68k {
                 case iDSP:
                     TMPS.fill( opAddr1, DS, opdM1, opdR1 );
                     switch (opdM1) {
-                        case DATA_REGISTER_DIRECT -> System.out.print( "[ D" + (int)opdR1 + " ] = " );
-                        case ADDRESS_REGISTER_DIRECT -> System.out.print( "[ A" + (int)opdR1 + " ] = " );
-                        case ADDRESS_REGISTER_INDIRECT -> System.out.print( "[" + intHex(AR[opdR1]) + " ] = " );
+                        case DATA_REGISTER_DIRECT -> io.print( "[ D" + (int)opdR1 + " ] = " );
+                        case ADDRESS_REGISTER_DIRECT -> io.print( "[ A" + (int)opdR1 + " ] = " );
+                        case ADDRESS_REGISTER_INDIRECT -> io.print( "[" + intHex(AR[opdR1]) + " ] = " );
                         case ADDRESS_REGISTER_INDIRECT_POSTINC ->
                                 /* numBytes(DS) subtracted to compensate post-incrementation */
-                                System.out.print( "[" + intHex( AR[opdR1] - DS.sizeValue() ) + " ] = " );
-                        case ADDRESS_REGISTER_INDIRECT_PREDEC -> System.out.print( "[" + intHex(AR[opdR1]) + "] = ");
-                        case RELATIVE_ABSOLUTE -> System.out.print( "[" + intHex( opAddr1 ) + "] = " );
+                                io.print( "[" + intHex( AR[opdR1] - DS.sizeValue() ) + " ] = " );
+                        case ADDRESS_REGISTER_INDIRECT_PREDEC -> io.print( "[" + intHex(AR[opdR1]) + "] = ");
+                        case RELATIVE_ABSOLUTE -> io.print( "[" + intHex( opAddr1 ) + "] = " );
                         default -> {
-                            logger.logError( "\n\t>>> INVALID address mode '" + opdM1
-                                                + "' for instruction '" + Mnemo[opId] + "' at PC = " + (PC-2) );
-                            H = true;
+                            fail( SimError.INVALID_ADDRESS_MODE, String.valueOf(opdM1) );
                             return;
                         }
                     }
                     switch (DS) {
-                        case ByteSize -> System.out.println( intHex(TMPS.get() & 0xff)
+                        case ByteSize -> io.println( intHex(TMPS.get() & 0xff)
                                                                 + " (" + DataSize.ByteSize.strValue() + ")" );
-                        case WordSize -> System.out.println( intHex(TMPS.get() & 0xffff)
+                        case WordSize -> io.println( intHex(TMPS.get() & 0xffff)
                                                                 + " (" + DataSize.WordSize.strValue() + ")" );
-                        case LongSize -> System.out.println( intHex(TMPS.get()) + " (" + DataSize.LongSize.strValue() + ")" );
+                        case LongSize -> io.println( intHex(TMPS.get()) + " (" + DataSize.LongSize.strValue() + ")" );
                         default -> {
-                            logger.logError( "\n\t>>> INVALID data size '" + DS
-                                             + "' for instruction '" + Mnemo[opId] + "' at PC = " + (PC-2) );
-                            H = true;
+                            fail( SimError.INVALID_DATA_SIZE, String.valueOf(DS) );
                             return;
                         }
                     }
                     break;
                 // display status register
                 case iDSR:
-                    System.out.println("Status Bits: H:" + H + " N:" + N + " Z:" + Z + " V:" + V + " C:" + C);
+                    settleFlags();
+                    io.println("Status Bits: H:" + H + " N:" + N + " Z:" + Z + " V:" + V + " C:" + C);
                     break;
                 // halt
                 case iHLT:
                     H = true;
+                    io.flush();
                     break;
                 default:
-                    logger.logError( "\n>>> ExecInstr() received invalid instruction '" + Mnemo[opId]
-                                     + "' at PC = " + (PC-2) );
-                    H = true ;
+                    fail( SimError.INVALID_INSTRUCTION, "" );
             }
-            logger.info( "FINAL: D[0] = " + intHexBin(DR[0]) + "; D[1] = " + intHexBin(DR[1]) );
+            if( logger.infoOn() )
+                logger.info( "FINAL: D[0] = " + intHexBin(DR[0]) + "; D[1] = " + intHexBin(DR[1]) );
         }
 
         /** Determines the format of the instruction: return True if F1, False if F2 */
-        boolean formatF1( byte opid ) {
-            return (opid != iADDQ) && (opid != iSUBQ) && ( (opid < iLSL) || (opid > iROR) ) && (opid != iMOVQ);
+        boolean formatF1( byte opid ) { return isFormatF1( opid ); }
+
+        /** An instruction of a {@link Block}: the OpCode is decoded and the operand addresses are fetched */
+        final class Step {
+            Step( short at, short code, DecodedInstr di, boolean hasAddr1, short addr1, boolean hasAddr2, short addr2,
+                  short nextPC, short lastMAR, int lastMDR ) {
+                this.at = at;
+                this.code = code;
+                this.di = di;
+                this.hasAddr1 = hasAddr1;
+                this.addr1 = addr1;
+                this.hasAddr2 = hasAddr2;
+                this.addr2 = addr2;
+                this.nextPC = nextPC;
+                this.lastMAR = lastMAR;
+                this.lastMDR = lastMDR;
+            }
+            /** address of the instruction */
+            private final short at ;
+            private final short code ;
+            private final DecodedInstr di ;
+            private final boolean hasAddr1, hasAddr2 ;
+            private final short addr1, addr2 ;
+            /** value of PC after the fetch */
+            private final short nextPC ;
+            /** values of MAR and MDR after the fetch */
+            private final short lastMAR ;
+            private final int lastMDR ;
+            /** the bound instruction, OR {@link #interpret()}: set ONCE by {@link #translate(int)} */
+            CompiledOp op ;
+            /** true if {@link #op} is bound by {@link StepBinder}, NOT the micro-program */
+            boolean bound ;
+
+            /** leave the CPU as after fetchOpCode() and fetchOperands(), then run the micro-program */
+            void interpret() {
+                instrPC = at ;
+                PC = nextPC ;
+                opCode = code ;
+                setDecoded( di );
+                if( hasAddr1 ) opAddr1 = addr1 ;
+                if( hasAddr2 ) opAddr2 = addr2 ;
+                MAR = lastMAR ;
+                MDR = lastMDR ;
+                execInstr();
+            }
+        }
+
+        /**
+         *  Translate the instructions from start up to the next branch or HLT, at most {@link BlockCache#MAX_STEPS} <br>
+         *  stop BEFORE any instruction that fetchOpCode() or fetchOperands() would report as an error
+         *  @return <em>null</em> if the first instruction can NOT be translated
+         */
+        Block translate( int start ) {
+            ArrayList<Step> steps = new ArrayList<>();
+            int pc = start ;
+            boolean last = false ;
+            while( !last && steps.size() < BlockCache.MAX_STEPS && pc + 1 < cpuSpace ) {
+                int code = mem.readWord( pc );
+                DecodedInstr di = DecodeTable[ code ];
+                if( di == null || (di.numOprd == 2 && !di.formatF1) )
+                    break;
+
+                int next = pc + 2, lastMAR = pc, lastMDR = code ;
+                boolean hasAddr1 = di.formatF1 && di.opdM1 == AddressMode.RELATIVE_ABSOLUTE ;
+                boolean hasAddr2 = di.opdM2 == AddressMode.RELATIVE_ABSOLUTE ;
+                short addr1 = 0, addr2 = 0 ;
+                if( hasAddr1 ) {
+                    if( next + 1 >= cpuSpace ) break;
+                    lastMAR = next ;
+                    lastMDR = mem.readWord( next );
+                    addr1 = (short)lastMDR ;
+                    next += 2 ;
+                }
+                if( hasAddr2 ) {
+                    if( next + 1 >= cpuSpace ) break;
+                    lastMAR = next ;
+                    lastMDR = mem.readWord( next );
+                    addr2 = (short)lastMDR ;
+                    next += 2 ;
+                }
+                Step st = new Step( (short)pc, (short)code, di, hasAddr1, addr1, hasAddr2, addr2,
+                                    (short)next, (short)lastMAR, lastMDR );
+                CompiledOp op = blockCache.binder.bind( st );
+                st.op = (op != null) ? op : st::interpret ;
+                st.bound = (op != null) ;
+                steps.add( st );
+                last = (di.opId >= iBRA && di.opId <= iBLE) || di.opId == iHLT ;
+                pc = next ;
+            }
+            if( steps.isEmpty() )
+                return null;
+            return new Block( start, pc, steps.toArray(new Step[0]) );
+        }
+
+        /**
+         *  run the Steps of blk until the end, a Halt, OR a WRITE to the code of blk
+         *  @return number of instructions executed
+         */
+        int execBlock( Block blk ) {
+            current = blk ;
+            if( blk.compiled != null )
+                return blk.compiled.run();
+            if( blockCache.compileThreshold > 0 )
+                blockCache.countRun( blk );
+            Step[] steps = blk.steps ;
+            for( int i = 0; i < steps.length; i++ ) {
+                steps[i].op.run();
+                if( H || !blk.valid )
+                    return i + 1;
+            }
+            return steps.length;
         }
+
+        /** the Block run last by {@link #execBlock}, OR <em>null</em> if the Fetch-Execute Cycle runs ONE instruction */
+        Block current ;
     }
 
     /** simulates a CPU */
     class Processor {
-        Processor() {
+        /** @param tools use the tools set with the <em>-Dsim68k.*</em> properties of this JVM */
+        Processor(final boolean tools) {
             logger.logInit();
             DR = new int[2] ;
             AR = new short[2] ;
             ctrl = new Controller();
-            MnemoInit();
+            blockCache = new BlockCache();
+            io = new ConsoleIO();
+            cpu = this;
+            if( tools )
+                useProperties();
+        }
+
+        /** profiler, tracer, clock, JMX AND input log as set with <em>-Dsim68k.profile</em>, <em>-Dsim68k.trace</em>, etc */
+        private void useProperties() {
+            String profileFolder = System.getProperty( "sim68k.profile" );
+            if( profileFolder != null )
+                profiler = new Profiler( cpuSpace, Path.of(profileFolder) );
+            String traceFile = System.getProperty( "sim68k.trace" );
+            if( traceFile != null )
+                tracer = new Tracer( Integer.getInteger("sim68k.trace.entries", Tracer.DEFAULT_ENTRIES),
+                                     Integer.getInteger("sim68k.trace.sample", 1), Path.of(traceFile),
+                                     !Boolean.getBoolean("sim68k.trace.ring") );
+            setClock( Long.getLong("sim68k.clock", 0L) );
+            if( Boolean.getBoolean("sim68k.jmx") )
+                enableMetrics();
+            try {
+                String recordFile = System.getProperty( "sim68k.record" );
+                if( recordFile != null )
+                    recordInput( Path.of(recordFile) );
+                String replayFile = System.getProperty( "sim68k.replay" );
+                if( replayFile != null )
+                    replayInput( Path.of(replayFile) );
+            } catch (IOException e) {
+                logger.logError( "PROBLEM with the input log: " + e.getMessage() );
+            }
         }
 
         private final Controller ctrl;
 
-        /** Read into memory a machine language program contained in a file */
+        /** folder with the .68b programs, by default in/ of the working folder: set with <em>-Dsim68k.in=folder</em> */
+        String inputFolder = System.getProperty( "sim68k.in", "in/" );
+
+        /** number of instructions executed since the last call to {@link #start()}, including the resumed runs */
+        long instructions ;
+
+        /** simulated 68000 clock: cycles of the instructions executed since the last call to {@link #start()} */
+        long cycles ;
+
+        /** a throttled run parks at most once per this much simulated time, NOT after each instruction */
+        static final long THROTTLE_NANOS = 1_000_000L ;
+
+        /** simulated clock rate in Hz of a throttled run; 0 = free-running */
+        private long clockHz ;
+
+        /** cycles between two checks of a throttled run */
+        private long throttleBatch ;
+
+        /** value of {@link #cycles} at the next check of a throttled run; Long.MAX_VALUE when free-running */
+        private long throttleAt = Long.MAX_VALUE ;
+
+        /** System.nanoTime() at the start of a throttled run */
+        private long throttleStart ;
+
+        /** value of {@link #cycles} at the start of a throttled run */
+        private long throttleCycles ;
+
+        /** count the runs of this Processor in {@link SimMetrics}, also set with <em>-Dsim68k.jmx=true</em> */
+        void enableMetrics() {
+            if( metrics == null )
+                metrics = SimMetrics.get().attach( Sim68k.this, this );
+        }
+
+        /** @return operand reads of Memory counted since the machine was built */
+        long memoryReads() { return mem.reads; }
+
+        /** @return operand writes of Memory counted since the machine was built */
+        long memoryWrites() { return mem.writes; }
+
+        /**
+         *  Run at the speed of a real 68000, set with <em>-Dsim68k.clock=Hz</em>, e.g. 8000000 <br>
+         *  the cycles are counted in BOTH modes
+         *  @param hz simulated clock rate; 0 to run as fast as possible
+         */
+        void setClock(final long hz) {
+            if( hz < 0 )
+                throw new IllegalArgumentException( "INVALID clock rate " + hz );
+            clockHz = hz;
+            throttleBatch = Math.max( 1L, hz * THROTTLE_NANOS / 1_000_000_000L );
+        }
+
+        /** @return the time the program would take on a 68000 at the clock rate, or at {@link #MC68000_CLOCK} if free-running */
+        long simulatedNanos() {
+            return (long)( cycles * 1e9 / (clockHz > 0 ? clockHz : MC68000_CLOCK) );
+        }
+
+        /** start the throttle for a run, if there is one */
+        private void startClock() {
+            if( clockHz > 0 ) {
+                throttleStart = System.nanoTime();
+                throttleCycles = cycles;
+                throttleAt = cycles + throttleBatch;
+            }
+            else
+                throttleAt = Long.MAX_VALUE;
+        }
+
+        /** park until the host clock catches up with the simulated clock, then set the next check */
+        private void throttle() {
+            long due = throttleStart + (long)( (cycles - throttleCycles) * 1e9 / clockHz );
+            long ahead;
+            while( (ahead = due - System.nanoTime()) > 0 )
+                LockSupport.parkNanos( ahead );
+            throttleAt = cycles + throttleBatch;
+        }
+
+        /** first value of the PC for {@link #start()}: 0 unless a program image says otherwise */
+        short entryPC ;
+
+        /** name of the last program loaded, without the file type */
+        String programName = "program" ;
+
+        /**
+         *  Profile each run, and write the reports to <var>folder</var> at the end of the run
+         *  @param folder for the reports; <em>null</em> to stop profiling
+         */
+        void setProfiling(final Path folder) {
+            profiler = (folder == null) ? null : new Profiler( cpuSpace, folder );
+        }
+
+        /**
+         *  Trace each run into a binary history: decode it with {@link Tracer#main}
+         *  @param trace to record into; <em>null</em> to stop tracing
+         */
+        void setTracing(final Tracer trace) {
+            tracer = trace;
+        }
+
+        /**
+         *  Record each value read by INP, with its PC and instruction count: show it with {@link InputLog#main}
+         *  @param file to create OR replace; <em>null</em> to stop recording
+         *  @throws IOException if the file can NOT be created
+         */
+        void recordInput(final Path file) throws IOException {
+            if( inputRecord != null )
+                inputRecord.close();
+            inputRecord = null;
+            if( file != null )
+                inputRecord = new InputLog.Recorder( file );
+        }
+
+        /**
+         *  Read the values for INP from a recording INSTEAD of the I/O device, e.g. to run a session again exactly <br>
+         *  a run halts if the program does NOT read at the same PC and instruction count as in the recording
+         *  @param file made by {@link #recordInput}; <em>null</em> to stop replaying
+         *  @throws IOException if the file can NOT be read OR is NOT a recording
+         */
+        void replayInput(final Path file) throws IOException {
+            if( inputReplay != null )
+                inputReplay.close();
+            inputReplay = null;
+            if( file != null )
+                inputReplay = new InputLog.Replay( file );
+        }
+
+        /** @return number of instructions of this run executed BEFORE the current one */
+        long inputCount() {
+            Block blk = ctrl.current ;
+            if( blk != null )
+                for( int i = 0; i < blk.steps.length; i++ )
+                    if( blk.steps[i].nextPC == PC )
+                        return instructions + i;
+            return instructions;
+        }
+
+        /** true if the last run stopped at a breakpoint, watchpoint, step OR {@link #limit}, so it can go on */
+        boolean paused ;
+
+        /** instructions the next run may execute; Long.MAX_VALUE = until the Halt bit */
+        private long runLimit = Long.MAX_VALUE ;
+
+        /**
+         *  The NEXT run stops, paused, after at most max instructions: translated Blocks are still used
+         *  until fewer instructions than a Block are left
+         *  @param max instructions, > 0
+         */
+        void limit( long max ) {
+            if( max <= 0 )
+                throw new IllegalArgumentException( "INVALID instruction limit = " + max );
+            runLimit = max ;
+        }
+
+        /** @return why the Debugger stopped the last run, OR <em>null</em> */
+        String stopReason() {
+            return (debugger == null) ? null : debugger.reason ;
+        }
+
+        /** @return the Debugger of this machine, created on first use */
+        Debugger debugger() {
+            if( debugger == null )
+                debugger = new Debugger( cpuSpace, MemorySize );
+            return debugger;
+        }
+
+        /** remove ALL the breakpoints and watchpoints: runs no longer check anything */
+        void clearDebugger() {
+            debugger = null;
+        }
+
+        /** run ONE instruction of a stopped program */
+        void step() {
+            debugger().step( 1 );
+            resume();
+        }
+
+        /** run a stopped program until the instruction after the current one, e.g. to the end of a loop */
+        void stepOver() {
+            int pc = address( PC );
+            DecodedInstr di = (pc >= 0 && pc + 1 < MemorySize) ? DecodeTable[ mem.readWord(pc) ] : null ;
+            if( di == null ) {
+                step();
+                return;
+            }
+            int next = pc + 2 ;
+            if( di.formatF1 && di.opdM1 == AddressMode.RELATIVE_ABSOLUTE )
+                next += 2 ;
+            if( di.opdM2 == AddressMode.RELATIVE_ABSOLUTE )
+                next += 2 ;
+            if( next >= cpuSpace ) {
+                step();
+                return;
+            }
+            runTo( next );
+        }
+
+        /** run a stopped program until the PC reaches address */
+        void runTo( int address ) {
+            debugger().runTo( address );
+            resume();
+        }
+
+        /** go on with a stopped program */
+        void cont() {
+            debugger().resume();
+            resume();
+        }
+
+        /** @return where and why the program stopped, with the registers */
+        String stopInfo() {
+            int pc = address( PC );
+            DecodedInstr di = (pc >= 0 && pc + 1 < MemorySize) ? DecodeTable[ mem.readWord(pc) ] : null ;
+            String reason = stopReason();
+            return "Stopped before " + (di == null ? "?" : Mnemo[di.opId]) + " at PC = " + intHex(pc) + ": "
+                   + (reason == null ? "instruction limit" : reason) + "\n\tD0 = " + intHex(DR[0]) + "  D1 = " + intHex(DR[1])
+                   + "  A0 = " + intHex(AR[0] & 0xFFFF) + "  A1 = " + intHex(AR[1] & 0xFFFF)
+                   + "\n\tStatus Bits: H:" + H + " N:" + N + " Z:" + Z + " V:" + V + " C:" + C ;
+        }
+
+        /** @param device to use instead of the current one, which is closed */
+        void setIO(final SimIO device) {
+            if( device != io )
+                io.close();
+            io = device;
+        }
+
+        /**
+         *  Read into memory a machine language program contained in a file
+         *  @param fname name of the program in {@link #inputFolder}, OR an absolute path
+         */
         boolean loadProgram( String fname ) {
-            boolean inComment = false ;
-            short address = 0 ;
-            String input ;
-            String inputFolder = "/home/marksa/git/Java/IntelliJ/IntelliJ-Sim68k/in/" ;
-            String filename = inputFolder + fname ;
-            try
-            {
-                File pf = new File( filename );
-                Scanner fileScanner = new Scanner( pf );
+            Path file = Path.of( inputFolder ).resolve( fname );
+            String filename = file.toString() ;
+            String name = file.getFileName().toString();
+            programName = name.substring( 0, name.lastIndexOf('.') < 1 ? name.length() : name.lastIndexOf('.') );
+            if( blockCache != null )
+                blockCache.clear();
+            if( fname.endsWith(ProgramImage.IMAGE_TYPE) )
+                return loadImage( filename );
+            entryPC = 0 ;
+            byte[] code ;
+            try {
                 logger.info( "Processing file: " + filename );
+                code = ProgramImage.parseText( file );
+            } catch (Exception e) {
+                logger.logError( e.getMessage() );
+                return false;
+            }
+            if( code.length > MemorySize ) {
+                logger.logError( "Program " + filename + " does NOT fit in memory" );
+                return false;
+            }
+            if( logger.fineOn() ) {
+                for( int address = 0; address < code.length; address++ ) {
+                    logger.fine( "Read value '" + byteInHex(code[address]) + "(" + code[address] + ")' into memory at location: "
+                                 + address );
+                    mem.load( address, code[address] );
+                }
+            }
+            else
+                mem.load( 0, ByteBuffer.wrap(code) );
+            io.println("Program loaded. " + code.length + " bytes in memory.");
+            return true ;
+        }
 
-                // get lines from the file
-                while( fileScanner.hasNextLine() ) {
-                    String nxtline = fileScanner.nextLine();
-                    Scanner wordScanner = new Scanner( nxtline );
-                    // get words from the line
-                    while ( wordScanner.hasNext() ) {
-                        input = wordScanner.next();
-                        logger.finer("Read word: " + input);
-
-                        // beginning & end of comment sections
-                        if( input.equals(COMMENT_MARKER) ) {
-                            inComment = ! inComment ;
-                            continue ;
-                        }
-                        // skip comment
-                        if( inComment )
-                            continue ;
-
-                        // process hex input
-                        if( input.charAt(0) == HEX_MARKER ) {
-                            String hx = input.substring(1, 3).toUpperCase( Locale.ROOT );
-                            long decVal = Integer.parseInt( hx, 16 );
-                            logger.fine( "Read value '" + HEX_MARKER + hx + "(" + decVal + ")' into memory at location: "
-                                         + address );
-                            mem.load( address, (byte)decVal );
-                            address++ ;
-                        }
-                    }
-                    wordScanner.close();
+        /** Copy into memory the program in a binary image, created by {@link ProgramImage#convert} */
+        boolean loadImage( String filename ) {
+            try {
+                ProgramImage image = ProgramImage.map( Path.of(filename) );
+                logger.info( "Processing image: " + filename );
+                if( image.entryPC < 0 || image.entryPC >= cpuSpace ) {
+                    logger.logError( "INVALID entry PC = " + intHex(image.entryPC) + " in program image " + filename );
+                    return false;
+                }
+                if( !mem.load(image.loadAddress, image.program()) ) {
+                    logger.logError( "Program image " + filename + " does NOT fit in memory" );
+                    return false;
                 }
-                fileScanner.close();
+                entryPC = (short)image.entryPC ;
+                io.println("Program loaded. " + image.length() + " bytes in memory.");
+                return true;
             } catch (Exception e) {
                 logger.logError( e.getMessage() );
                 return false;
             }
-            System.out.println("Program loaded. " + address + " bytes in memory.");
-            return true ;
         }
 
-        /** Initialize Mnemo with Strings corresponding to each instruction */
-        void MnemoInit() {
-            Mnemo = new String[iHLT + 1 ];
-            Mnemo[iADD]   = "ADD";
-            Mnemo[iADDQ]  = "ADDQ";
-            Mnemo[iSUB]   = "SUB";
-            Mnemo[iSUBQ]  = "SUBQ";
-            Mnemo[iMULS]  = "MULS";
-            Mnemo[iDIVS]  = "DIVS";
-            Mnemo[iNEG]   = "NEG";
-            Mnemo[iCLR]   = "CLR";
-            Mnemo[iNOT]   = "NOT";
-            Mnemo[iAND]   = "AND";
-            Mnemo[iOR]    = "OR";
-            Mnemo[iEOR]   = "EOR";
-            Mnemo[iLSL]   = "LSL";
-            Mnemo[iLSR]   = "LSR";
-            Mnemo[iROL]   = "ROL";
-            Mnemo[iROR]   = "ROR";
-            Mnemo[iCMP]   = "CMP";
-            Mnemo[iTST]   = "TST";
-            Mnemo[iBRA]   = "BRA";
-            Mnemo[iBVS]   = "BVS";
-            Mnemo[iBEQ]   = "BEQ";
-            Mnemo[iBCS]   = "BCS";
-            Mnemo[iBGE]   = "BGE";
-            Mnemo[iBLE]   = "BLE";
-            Mnemo[iMOV]   = "MOVE";
-            Mnemo[iMOVQ]  = "MOVEQ";
-            Mnemo[iEXG]   = "EXG";
-            Mnemo[iMOVA]  = "MOVEA";
-            Mnemo[iINP]   = "INP";
-            Mnemo[iDSP]   = "DSP";
-            Mnemo[iDSR]   = "DSR";
-            Mnemo[iHLT]   = "HLT";
+        /**
+         *  Copy a program into memory WITHOUT any console output, e.g. for {@link Sim68kEngine}
+         *  @param code ALL the remaining bytes are copied; the position is NOT changed
+         *  @param location address of the first byte
+         *  @param entry PC for {@link #start()}
+         *  @param name of the program, for the input log
+         *  @return false if the program does NOT fit in memory
+         */
+        boolean loadCode( ByteBuffer code, int location, int entry, String name ) {
+            if( entry < 0 || entry >= cpuSpace || !mem.load(location, code) )
+                return false;
+            if( blockCache != null )
+                blockCache.clear();
+            programName = name ;
+            entryPC = (short)entry ;
+            return true;
+        }
+
+        /** @return length bytes of memory from address, WITHOUT using MAR and MDR */
+        byte[] readMemory( int address, int length ) {
+            if( address < 0 || length < 0 || address + length > MemorySize )
+                throw new IllegalArgumentException( "INVALID memory range " + intHex(address) + " + " + length );
+            byte[] bytes = new byte[length];
+            for( int i = 0; i < length; i++ )
+                bytes[i] = mem.peek( address + i );
+            return bytes;
+        }
+
+        /** copy bytes into memory at address, WITHOUT using MAR and MDR: translated code there is dropped */
+        void writeMemory( int address, byte[] bytes ) {
+            if( !mem.load(address, ByteBuffer.wrap(bytes)) )
+                throw new IllegalArgumentException( "INVALID memory range " + intHex(address) + " + " + bytes.length );
+            if( blockCache != null )
+                blockCache.written( address, bytes.length );
         }
 
         /** Fetch-Execute Cycle simulated */
         void start() {
             logger.info( "\n\t>>> START PROGRAM >>>" );
-            PC = 0;
+            try {
+                if( debugger != null ) {
+                    if( debugger.armed() )
+                        debugger.reset();
+                    else
+                        debugger = null;
+                }
+                PC = entryPC;
+                instructions = 0;
+                cycles = 0;
+                try {
+                    if( inputRecord != null )
+                        inputRecord.start( programName );
+                    if( inputReplay != null )
+                        inputReplay.start( programName );
+                } catch (Exception e) {
+                    logger.logError( "PROBLEM with the input log: " + e.getMessage() );
+                    if( e instanceof IllegalStateException ) {
+                        H = true;
+                        return;
+                    }
+                }
+                run();
+            }
+            finally {
+                // a limit is for ONE run, even one that never began
+                runLimit = Long.MAX_VALUE ;
+            }
+        }
+
+        /** continue the Fetch-Execute Cycle from the current PC, e.g. after {@link Sim68k#restore(Snapshot)} */
+        void resume() {
+            logger.info( "\n\t>>> RESUME PROGRAM at PC = " + PC + " >>>" );
+            run();
+        }
+
+        /**
+         *  Repeat the Fetch-Execute Cycle until the Halt bit becomes true <br>
+         *  the counters go on from the last run, so a resumed program counts its instructions as one run would
+         */
+        private void run() {
+            long stopAt = (runLimit > Long.MAX_VALUE - instructions) ? Long.MAX_VALUE : instructions + runLimit ;
+            runLimit = Long.MAX_VALUE ;
             H = false;
-            do // Repeat the Fetch-Execute Cycle until the Halt bit becomes true
-            {
-                ctrl.fetchOpCode();
-                ctrl.decodeInstr();
-                ctrl.fetchOperands();
-                if( !H )
-                    ctrl.execInstr();
+            error = null;
+            paused = false;
+            ctrl.current = null;
+            startClock();
+            if( metrics != null )
+                metrics.begin();
+            try {
+                if( profiler != null || tracer != null || debugger != null ) {
+                    instrumentedRun( stopAt );
+                    return;
+                }
+                do // Repeat the Fetch-Execute Cycle until the Halt bit becomes true
+                {
+                    // the interpreter writes the log records of each instruction at CONFIG and finer
+                    Block blk = (blockCache == null || logger.configOn()) ? null : blockCache.lookup( ctrl, PC );
+                    if( blk != null && stopAt - instructions >= blk.steps.length ) {
+                        int n = ctrl.execBlock( blk );
+                        instructions += n;
+                        cycles += (n < blk.steps.length) ? blk.cycles( n )
+                                  : (PC == (short)blk.end) ? blk.cycles : blk.cycles + blk.takenExtra ;
+                        ctrl.current = null;
+                        if( metrics != null )
+                            metrics.ran( blk, n );
+                    }
+                    else {
+                        ctrl.fetchOpCode();
+                        ctrl.fetchOperands();
+                        if( !H ) {
+                            short next = PC ;
+                            ctrl.execInstr();
+                            instructions++ ;
+                            cycles += (PC == next) ? ctrl.opCycles : ctrl.takenCycles ;
+                            if( metrics != null )
+                                metrics.ran( ctrl.opId );
+                        }
+                    }
+                    if( cycles >= throttleAt )
+                        throttle();
+                }
+                while( !H && instructions < stopAt );
+                paused = !H ;
             }
-            while( !H );
+            finally {
+                io.flush();
+                settleFlags();
+                if( metrics != null )
+                    metrics.end( paused );
+            }
+
+            logger.info("\tEnd of Fetch-Execute Cycle");
+            if( logger.infoOn() )
+                logger.info( "\t" + instructions + " instructions in " + cycles + " cycles" );
+        }
 
+        /**
+         *  The plain Fetch-Execute Cycle, counting every instruction for {@link #profiler},
+         *  recording it for {@link #tracer} and stopping where {@link #debugger} says <br>
+         *  NO translated Blocks, so each instruction is seen with its PC
+         */
+        private void instrumentedRun( long stopAt ) {
+            if( profiler != null )
+                profiler.begin( address(PC) );
+            boolean tracing = (tracer != null) && beginTrace();
+            try {
+                do {
+                    if( debugger != null && debugger.stopBefore(address(PC), Sim68k.this) ) {
+                        paused = true;
+                        break;
+                    }
+                    short pc = PC ;
+                    ctrl.fetchOpCode();
+                    ctrl.fetchOperands();
+                    if( H )
+                        break;
+                    short next = PC ;
+                    boolean traced = tracing && tracer.before( DR, AR );
+                    ctrl.execInstr();
+                    instructions++ ;
+                    cycles += (PC == next) ? ctrl.opCycles : ctrl.takenCycles ;
+                    if( cycles >= throttleAt )
+                        throttle();
+                    byte op = ctrl.opId ;
+                    if( metrics != null )
+                        metrics.ran( op );
+                    if( profiler != null ) {
+                        boolean f1 = isFormatF1( op );
+                        profiler.instr( address(pc), op, ctrl.DS.ordinal(),
+                                        (f1 && op < iDSR) ? ctrl.opdM1.ordinal() : -1,
+                                        (ctrl.numOprd == 2 || !f1) ? ctrl.opdM2.ordinal() : -1 );
+                        if( op >= iBRA && op <= iBLE )
+                            profiler.branch( address(pc), PC != next, address(PC) );
+                    }
+                    if( traced ) {
+                        settleFlags();
+                        tracer.record( pc, opCode, opAddr1, opAddr2, DR, AR,
+                                       (H ? Tracer.H_BIT : 0) | (N ? Tracer.N_BIT : 0) | (Z ? Tracer.Z_BIT : 0)
+                                       | (V ? Tracer.V_BIT : 0) | (C ? Tracer.C_BIT : 0) );
+                    }
+                    if( debugger != null && debugger.watchHit ) {
+                        paused = !H;
+                        break;
+                    }
+                }
+                while( !H && instructions < stopAt );
+                paused = !H ;
+            } finally {
+                if( tracing )
+                    finishTrace();
+            }
+            if( paused ) {
+                logger.info( "\tFetch-Execute Cycle stopped at PC = " + PC );
+                return;
+            }
             logger.info("\tEnd of Fetch-Execute Cycle");
+            if( logger.infoOn() )
+                logger.info( "\t" + instructions + " instructions in " + cycles + " cycles" );
+            if( profiler != null ) {
+                try {
+                    profiler.report( programName, Mnemo );
+                } catch (Exception e) {
+                    logger.logError( "PROBLEM writing the profile: " + e.getMessage() );
+                }
+            }
+        }
+
+        /** @return false if the trace can NOT be started, so the run goes on WITHOUT it */
+        private boolean beginTrace() {
+            try {
+                tracer.begin();
+                return true;
+            } catch (IOException e) {
+                logger.logError( "PROBLEM creating the trace: " + e.getMessage() );
+                return false;
+            }
+        }
+
+        /** spill the rest of the trace */
+        private void finishTrace() {
+            try {
+                tracer.finish();
+            } catch (Exception e) {
+                logger.logError( "PROBLEM writing the trace: " + e.getMessage() );
+            }
         }
     }
 
@@ -1357,57 +3503,144 @@ class Sim68k {
         System.exit( 0 );
     }
 
+    /** create the hardware: logging MUST already be set up */
+    Processor boot() {
+        return boot( true );
+    }
+
+    /**
+     * create the hardware: logging MUST already be set up
+     * @param tools use the tools set with the <em>-Dsim68k.*</em> properties, e.g. NOT for a job of {@link Sim68kServer}
+     */
+    Processor boot(final boolean tools) {
+        mem = new Memory();
+        return new Processor( tools );
+    }
+
     /** interact with the user and start the program */
     void startup(String conLevel, String fileLevel) {
         // init logging
-        logControl = new LogControl(conLevel, fileLevel);
-        logger = logControl.getLogger();
+        setLogging( new LogControl(conLevel, fileLevel) );
         logger.config( Sim68k.class.getSimpleName() + " Log Level = " + conLevel );
 
-        mem = new Memory();
-        Processor proc = new Processor();
+        Processor proc = boot();
         String input = "0";
         // main menu
-        try( Scanner inScanner = new Scanner(System.in) ) {
+        try {
             while( !input.equals(QUIT) ) {
-                System.out.print( "Your Option ('" + EXECUTE + "' to execute a program, '" + QUIT + "' to quit): " );
                 // read the next word
-                input = inScanner.next().toLowerCase();
+                input = ask( "Your Option ('" + EXECUTE + "' to execute a program, '" + QUIT + "' to quit): " ).toLowerCase();
                 logger.info( "option input = " + input );
                 switch( input ) {
                     case EXECUTE -> {
                         // execution on the simulator
-                        System.out.print( "Name of the 68k binary program ('.68b' will be added automatically): " );
-                        input = inScanner.next();
+                        input = ask( "Name of the 68k binary program ('.68b' will be added automatically): " );
                         logger.info( "program input = " + input );
-                        if( proc.loadProgram(input + ".68b") )
+                        if( !input.endsWith(ProgramImage.IMAGE_TYPE) )
+                            input += ProgramImage.TEXT_TYPE ;
+                        if( proc.loadProgram(input) ) {
                             proc.start();
+                            if( proc.paused )
+                                io.println( proc.stopInfo() );
+                        }
                         else
-                            logger.logError( "PROBLEM loading File '" + input + ".68b'!" );
+                            logger.logError( "PROBLEM loading File '" + input + "'!" );
                     }
                     case TEST -> {
                         // info on system data sizes
-                        System.out.println( "size of byte  = " + Byte.BYTES );
-                        System.out.println( "size of char  = " + Character.BYTES );
-                        System.out.println( "size of short = " + Short.BYTES );
-                        System.out.println( "size of int   = " + Integer.BYTES );
-                        System.out.println( "size of long  = " + Long.BYTES );
+                        io.println( "size of byte  = " + Byte.BYTES );
+                        io.println( "size of char  = " + Character.BYTES );
+                        io.println( "size of short = " + Short.BYTES );
+                        io.println( "size of int   = " + Integer.BYTES );
+                        io.println( "size of long  = " + Long.BYTES );
                         int t = 0xFFFFFFFF;
-                        System.out.println( "int t = 0xFFFFFFFF = " + intHexBin(t) );
+                        io.println( "int t = 0xFFFFFFFF = " + intHexBin(t) );
                         String hexstr = "FFFFFFFF";
-                        System.out.println( "String hexstr = " + hexstr );
+                        io.println( "String hexstr = " + hexstr );
                         long l = Long.parseLong( hexstr, 16 );
-                        System.out.println( "Long.parseLong(" + hexstr + ") = " + l + " = " + Long.toHexString(l) );
+                        io.println( "Long.parseLong(" + hexstr + ") = " + l + " = " + Long.toHexString(l) );
+                    }
+                    case QUIT -> io.println( "Bye!" );
+                    default -> {
+                        if( !debugCommand(proc, input) )
+                            io.println( "Invalid Option. Please enter '" + EXECUTE + "' or '" + QUIT + "'." );
                     }
-                    case QUIT -> System.out.println( "Bye!" );
-                    default -> System.out.println( "Invalid Option. Please enter '" + EXECUTE + "' or '" + QUIT + "'." );
                 }
             }
         } catch (Exception e) {
+            io.flush();
             logger.logError( e.getMessage() );
             logger.logError( "PROBLEM RUNNING PROGRAM!" );
             System.exit( 1395 );
         }
+        io.close();
         logger.info("\tPROGRAM ENDED");
     }
+
+    /** @return the next word from the I/O device, after showing prompt on it */
+    private String ask( String prompt ) {
+        io.print( prompt );
+        io.flush();
+        return io.next();
+    }
+
+    /** commands of the menu for {@link Debugger} */
+    static final String HELP =
+        "break <addr>                     stop before the instruction at addr\n" +
+        "breakif <addr> <reg> <op> <val>  ... ONLY if e.g. 'D0 = $5' OR 'Z != 0'\n" +
+        "                                 reg: D0 D1 A0 A1 C V Z N,  op: = != < <= > >=\n" +
+        "watch <first> <last> r|w|rw      stop after an instruction that reads and/or writes Memory first..last\n" +
+        "list                             show the breakpoints and watchpoints\n" +
+        "clear                            remove ALL the breakpoints and watchpoints\n" +
+        "step                             run ONE instruction of the stopped program\n" +
+        "over                             run the stopped program to the next instruction, e.g. past a loop\n" +
+        "runto <addr>                     run the stopped program until the PC reaches addr\n" +
+        "cont                             go on with the stopped program\n" +
+        "addresses and values are decimal, OR hex after '$'" ;
+
+    /**
+     *  Do a debugger command from the menu: the words after it are read from the I/O device
+     *  @return false if cmd is NOT a debugger command
+     */
+    boolean debugCommand( Processor proc, String cmd ) {
+        try {
+            switch( cmd ) {
+                case "break" -> proc.debugger().setBreak( Debugger.parseValue(io.next()) );
+                case "breakif" -> {
+                    int address = Debugger.parseValue( io.next() );
+                    String reg = io.next(), op = io.next();
+                    proc.debugger().setBreak( address, new Debugger.Condition(reg, op, Debugger.parseValue(io.next())) );
+                }
+                case "watch" -> {
+                    int first = Debugger.parseValue( io.next() ), last = Debugger.parseValue( io.next() );
+                    String kind = io.next().toLowerCase();
+                    proc.debugger().setWatch( new Debugger.Watch(first, last, kind.contains("r"), kind.contains("w")) );
+                }
+                case "list" -> io.print( debugger == null ? "NO breakpoints or watchpoints\n" : debugger.list() );
+                case "clear" -> proc.clearDebugger();
+                case "step", "over", "runto", "cont" -> {
+                    int address = cmd.equals("runto") ? Debugger.parseValue( io.next() ) : 0 ;
+                    if( !proc.paused ) {
+                        io.println( "NO program is stopped: '" + EXECUTE + "' to start one." );
+                        return true;
+                    }
+                    switch( cmd ) {
+                        case "step" -> proc.step();
+                        case "over" -> proc.stepOver();
+                        case "runto" -> proc.runTo( address );
+                        default -> proc.cont();
+                    }
+                    if( proc.paused )
+                        io.println( proc.stopInfo() );
+                }
+                case "help" -> io.println( HELP );
+                default -> {
+                    return false;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            io.println( "INVALID " + cmd + ": " + e.getMessage() );
+        }
+        return true;
+    }
 }
\ No newline at end of file
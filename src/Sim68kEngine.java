@@ -0,0 +1,401 @@
+/* ******************************************************************************
+ *
+ * Sim68kEngine.java
+ *
+ * Headless Sim68k for programs that embed the simulator, e.g. larger test systems
+ *  - load a program from a byte array, a file OR a stream: text (.68b) OR image (.68i)
+ *  - read and set the registers, status bits and Memory
+ *  - run until HLT, for at most N instructions OR until a breakpoint, with a Result for each run
+ *  - input words are given in advance, output is kept in memory: NO console and, by default, NO logs
+ *
+ *  e.g.
+ *    Sim68kEngine $eng = new Sim68kEngine();
+ *    $eng.load( Path.of("in/hilow.68b") ).input( "0", "7" );
+ *    Sim68kEngine.Result $res = $eng.start( 1_000_000 );
+ *
+ ********************************************************************************/
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+
+
+/**
+ *  ONE simulated machine driven by method calls instead of the menu of {@link Sim68k#startup} <br>
+ *  built on {@link Sim68k.Processor} and its Memory; like them, used by ONE thread at a time
+ */
+class Sim68kEngine {
+    /** a machine with the default Memory size that logs NOTHING */
+    Sim68kEngine() {
+        this( null, Sim68k.DEFAULT_MEMORY_SIZE );
+    }
+
+    /** @param memorySize bytes of Memory, up to {@link Sim68k#MAX_MEMORY_SIZE}; logs NOTHING */
+    Sim68kEngine(final int memorySize) {
+        this( null, memorySize );
+    }
+
+    /**
+     * @param lc shared Logging management; <em>null</em> = log NOTHING
+     * @param memorySize bytes of Memory, up to {@link Sim68k#MAX_MEMORY_SIZE}
+     */
+    Sim68kEngine(final LogControl lc, final int memorySize) {
+        this( lc, memorySize, true );
+    }
+
+    /**
+     * @param lc shared Logging management; <em>null</em> = log NOTHING
+     * @param memorySize bytes of Memory, up to {@link Sim68k#MAX_MEMORY_SIZE}
+     * @param tools use the profiler, tracer, clock, JMX AND input log set with the <em>-Dsim68k.*</em> properties
+     */
+    Sim68kEngine(final LogControl lc, final int memorySize, final boolean tools) {
+        if( memorySize <= 0 || memorySize > Sim68k.MAX_MEMORY_SIZE )
+            throw new IllegalArgumentException( "INVALID memory size = " + memorySize );
+        sim = new Sim68k( lc, memorySize );
+        proc = sim.boot( tools );
+        proc.setIO( io );
+    }
+
+    /*
+     *        L O A D
+     ************************************************************************************************************ */
+
+    /**
+     * @param code machine code to load at address 0 and start at 0
+     * @return this
+     */
+    Sim68kEngine load(final byte[] code) {
+        return load( code, 0, 0 );
+    }
+
+    /**
+     * @param code machine code
+     * @param address of the first byte
+     * @param entry first value of the PC
+     * @return this
+     * @throws IllegalArgumentException if the code does NOT fit in memory OR entry is outside it
+     */
+    Sim68kEngine load(final byte[] code, final int address, final int entry) {
+        return load( ByteBuffer.wrap(code), address, entry, "program" );
+    }
+
+    /**
+     * @param file a text program (.68b) OR a program image (.68i)
+     * @return this
+     * @throws IOException if the file can NOT be read OR is NOT a valid program
+     */
+    Sim68kEngine load(final Path file) throws IOException {
+        String $name = file.getFileName().toString();
+        int $dot = $name.lastIndexOf( '.' );
+        String $prog = ($dot < 1) ? $name : $name.substring( 0, $dot );
+        if( $name.endsWith(ProgramImage.IMAGE_TYPE) ) {
+            ProgramImage $image = ProgramImage.map( file );
+            return load( $image.program(), $image.loadAddress, $image.entryPC, $prog );
+        }
+        return load( ByteBuffer.wrap(ProgramImage.parseText(file)), 0, 0, $prog );
+    }
+
+    /**
+     * @param in ALL of a text program OR a program image, told apart by the magic number of the image; NOT closed
+     * @param name of the program
+     * @return this
+     * @throws IOException if the stream can NOT be read OR is NOT a valid program
+     */
+    Sim68kEngine load(final InputStream in, final String name) throws IOException {
+        byte[] $bytes = in.readAllBytes();
+        ByteBuffer $buf = ByteBuffer.wrap( $bytes );
+        if( $bytes.length >= ProgramImage.HEADER_SIZE && $buf.getInt(0) == ProgramImage.MAGIC ) {
+            ProgramImage $image = ProgramImage.read( $buf, name );
+            return load( $image.program(), $image.loadAddress, $image.entryPC, name );
+        }
+        byte[] $code = ProgramImage.parseText( Channels.newChannel(new ByteArrayInputStream($bytes)), name );
+        return load( ByteBuffer.wrap($code), 0, 0, name );
+    }
+
+    private Sim68kEngine load(final ByteBuffer code, final int address, final int entry, final String name) {
+        int $length = code.remaining();
+        if( !proc.loadCode(code, address, entry, name) )
+            throw new IllegalArgumentException( "Program " + name + " of " + $length + " bytes at " + Sim68k.intHex(address)
+                                                + ", entry " + Sim68k.intHex(entry) + " does NOT fit in memory" );
+        loaded = true;
+        return this;
+    }
+
+    /*
+     *        R E G I S T E R S   &   M E M O R Y
+     ************************************************************************************************************ */
+
+    /** @return data register D<var>n</var> */
+    int getD(final int n) { return sim.DR[n]; }
+
+    /** @return this, with data register D<var>n</var> = value */
+    Sim68kEngine setD(final int n, final int value) {
+        sim.DR[n] = value;
+        return this;
+    }
+
+    /** @return address register A<var>n</var>, unsigned */
+    int getA(final int n) { return sim.AR[n] & 0xFFFF; }
+
+    /** @return this, with address register A<var>n</var> = value */
+    Sim68kEngine setA(final int n, final int value) {
+        sim.AR[n] = (short)value;
+        return this;
+    }
+
+    /** @return the Program Counter, as a Memory address */
+    int getPC() { return sim.address( sim.PC ); }
+
+    /** @return this, with the PC = address: {@link #resume()} runs from there */
+    Sim68kEngine setPC(final int address) {
+        if( address < 0 || address >= sim.cpuSpace )
+            throw new IllegalArgumentException( "INVALID PC = " + Sim68k.intHex(address) );
+        sim.PC = (short)address;
+        return this;
+    }
+
+    /** @return the status bits N, Z, V and C, packed like the 68000 CCR: see {@link Sim68k#CCR_N} */
+    int getCCR() {
+        sim.settleFlags();
+        return (sim.N ? Sim68k.CCR_N : 0) | (sim.Z ? Sim68k.CCR_Z : 0) | (sim.V ? Sim68k.CCR_V : 0) | (sim.C ? Sim68k.CCR_C : 0) ;
+    }
+
+    /** @return this, with the status bits N, Z, V and C from ccr, packed like the 68000 CCR */
+    Sim68kEngine setCCR(final int ccr) {
+        sim.settleFlags();
+        sim.setCCR( ccr );
+        return this;
+    }
+
+    /** @return length bytes of Memory from address */
+    byte[] readMemory(final int address, final int length) {
+        return proc.readMemory( address, length );
+    }
+
+    /** @return this, with bytes copied into Memory at address */
+    Sim68kEngine writeMemory(final int address, final byte[] bytes) {
+        proc.writeMemory( address, bytes );
+        return this;
+    }
+
+    /** @return the state of the machine, to {@link #restore} later in this OR another engine of the same Memory size */
+    Sim68k.Snapshot snapshot() { return sim.snapshot(); }
+
+    /** @return this, back at snap: {@link #resume()} continues from its PC */
+    Sim68kEngine restore(final Sim68k.Snapshot snap) {
+        sim.restore( snap );
+        return this;
+    }
+
+    /*
+     *        I / O
+     ************************************************************************************************************ */
+
+    /** @return this, with words added to the input for INP */
+    Sim68kEngine input(final String... words) {
+        io.words.addAll( Arrays.asList(words) );
+        return this;
+    }
+
+    /** @return ALL the output of DSP and DSR so far */
+    String output() { return io.output(); }
+
+    /** forget the output so far */
+    void clearOutput() { io.clear(); }
+
+    /** @param device to use INSTEAD of the input and output of this engine, e.g. a {@link ConsoleIO} */
+    void setIO(final SimIO device) { proc.setIO( device ); }
+
+    /**
+     *  Input words given in advance, output kept in memory <br>
+     *  INP with NO input left stops the program with {@link Sim68k.SimError#INVALID_INPUT}
+     */
+    private static final class EngineIO extends BufferedIO {
+        final Deque<String> words = new ArrayDeque<>();
+
+        private final StringBuilder output = new StringBuilder();
+
+        @Override
+        public String next() {
+            String $word = words.poll();
+            if( $word == null )
+                throw new NoSuchElementException( "NO more input" );
+            return $word;
+        }
+
+        @Override
+        protected void write(final CharSequence chars) { output.append( chars ); }
+
+        String output() {
+            flush();
+            return output.toString();
+        }
+
+        void clear() {
+            flush();
+            output.setLength( 0 );
+        }
+    }
+
+    /*
+     *        R U N
+     ************************************************************************************************************ */
+
+    /**
+     * Set a breakpoint: a run stops BEFORE the instruction at address, with {@link Result.Stop#BREAKPOINT}
+     * @return this
+     */
+    Sim68kEngine breakAt(final int address) {
+        proc.debugger().setBreak( address );
+        return this;
+    }
+
+    /** @return the Debugger, for conditional breakpoints, watchpoints and steps */
+    Debugger debugger() { return proc.debugger(); }
+
+    /** @return the Result of running the program from its entry PC until HLT, an error OR a breakpoint */
+    Result start() {
+        return start( Long.MAX_VALUE );
+    }
+
+    /**
+     * @param max instructions to run at most
+     * @return the Result of running the program from its entry PC until HLT, an error, a breakpoint OR max instructions
+     */
+    Result start(final long max) {
+        if( !loaded )
+            throw new IllegalStateException( "NO program loaded" );
+        proc.limit( max );
+        long $t0 = System.nanoTime();
+        proc.start();
+        return result( System.nanoTime() - $t0 );
+    }
+
+    /** @return the Result of running on from the current PC until HLT, an error OR a breakpoint */
+    Result resume() {
+        return resume( Long.MAX_VALUE );
+    }
+
+    /**
+     * Go on after a breakpoint OR limit, OR from a PC set OR restored: the counters go on from the last run
+     * @param max instructions to run at most
+     * @return the Result of running on from the current PC until HLT, an error, a breakpoint OR max instructions
+     */
+    Result resume(final long max) {
+        if( !loaded )
+            throw new IllegalStateException( "NO program loaded" );
+        if( last != null && last.stop == Result.Stop.BREAKPOINT )
+            proc.debugger().resume();
+        proc.limit( max );
+        long $t0 = System.nanoTime();
+        proc.resume();
+        return result( System.nanoTime() - $t0 );
+    }
+
+    /** @return the Result of the last run, OR <em>null</em> */
+    Result last() { return last; }
+
+    private Result result(final long nanos) {
+        Result.Stop $stop;
+        String $detail;
+        if( sim.error != null ) {
+            $stop = Result.Stop.ERROR;
+            $detail = sim.error.code() + " " + sim.error.text + " at PC = " + Sim68k.intHex( sim.address(sim.errorPC) );
+        }
+        else if( sim.H ) {
+            $stop = Result.Stop.HALTED;
+            $detail = "HLT";
+        }
+        else if( proc.paused && proc.stopReason() != null ) {
+            $stop = Result.Stop.BREAKPOINT;
+            $detail = proc.stopReason();
+        }
+        else {
+            $stop = Result.Stop.LIMIT;
+            $detail = "instruction limit";
+        }
+        last = new Result( $stop, $detail, sim.error, getPC(), proc.instructions, proc.cycles, nanos );
+        return last;
+    }
+
+    /**
+     *  How and where a run stopped, with its counters
+     */
+    static final class Result {
+        /** why a run stopped */
+        enum Stop {
+            /** the program executed HLT */
+            HALTED,
+            /** the program halted with a {@link Sim68k.SimError} */
+            ERROR,
+            /** a breakpoint, watchpoint OR step of the {@link Debugger}: the program can {@link Sim68kEngine#resume()} */
+            BREAKPOINT,
+            /** the instruction limit of the run: the program can {@link Sim68kEngine#resume()} */
+            LIMIT
+        }
+
+        private Result(final Stop stop, final String detail, final Sim68k.SimError error, final int pc,
+                       final long instructions, final long cycles, final long nanos) {
+            this.stop = stop;
+            this.detail = detail;
+            this.error = error;
+            this.pc = pc;
+            this.instructions = instructions;
+            this.cycles = cycles;
+            this.nanos = nanos;
+        }
+
+        final Stop stop ;
+
+        /** the reason in words */
+        final String detail ;
+
+        /** the error if {@link Stop#ERROR}, else <em>null</em> */
+        final Sim68k.SimError error ;
+
+        /** PC at the stop: of the NEXT instruction, except after an error */
+        final int pc ;
+
+        /** instructions and simulated 68000 clock cycles since the program started */
+        final long instructions, cycles ;
+
+        /** wall-clock time of this run */
+        final long nanos ;
+
+        /** @return true if the program can go on with {@link Sim68kEngine#resume()} */
+        boolean paused() { return stop == Stop.BREAKPOINT || stop == Stop.LIMIT; }
+
+        @Override
+        public String toString() {
+            return stop + " (" + detail + ") at PC = " + Sim68k.intHex(pc) + ": " + instructions + " instructions, "
+                   + cycles + " cycles in " + nanos / 1000 + " us";
+        }
+    }
+
+    /*
+     *        F I E L D S
+     ************************************************************************************************************ */
+
+    /** @return the machine, for anything NOT covered here */
+    Sim68k machine() { return sim; }
+
+    /** @return the Processor of the machine */
+    Sim68k.Processor processor() { return proc; }
+
+    private final Sim68k sim ;
+
+    private final Sim68k.Processor proc ;
+
+    private final EngineIO io = new EngineIO();
+
+    private boolean loaded ;
+
+    private Result last ;
+}
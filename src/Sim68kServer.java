@@ -0,0 +1,435 @@
+/* ******************************************************************************
+ *
+ * Sim68kServer.java
+ *
+ * Local job service for Sim68k: many short runs in ONE JVM
+ *  - POST /run with a text program (.68b) OR a program image (.68i) as the body
+ *      ?input=<INP values, separated by spaces OR commas> &budget=<instructions> &memory=<bytes> &name=<program>
+ *    runs it on its OWN thread with a NEW Sim68kEngine, and streams back the output of DSP and DSR,
+ *    then a '#RESULT' line and the stop reason, registers and counters as <key>=<value> lines, OR stop=ABORTED
+ *  - GET /status gives the counts of the service
+ *  - at most ONE job per core runs at a time; up to a queue more wait; others get 503 with Retry-After
+ *  - virtual threads when the JVM has them, else platform threads
+ *
+ *  Run from the project folder, on the loopback address ONLY:
+ *    java -cp out Sim68kServer [port] [queue]
+ *  Quotas of a job: -Dsim68k.server.memory=<bytes> -Dsim68k.server.instructions=<count> -Dsim68k.server.upload=<bytes>
+ *  The tools of Sim68k set with -Dsim68k.profile, .trace, .clock, .jmx, .record AND .replay are NOT used by jobs
+ *
+ ********************************************************************************/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Run program jobs posted over HTTP, each on an isolated {@link Sim68kEngine} <br>
+ *  the admission queue is bounded: a job that can NOT wait is refused at once, so a client backs off
+ *  instead of piling up threads and memory
+ */
+class Sim68kServer {
+    static final int DEFAULT_PORT = 6868 ;
+
+    /** jobs that may wait for a core, for each core */
+    static final int DEFAULT_QUEUE_PER_CORE = 16 ;
+
+    /** most Memory a job may ask for */
+    static final int DEFAULT_MAX_MEMORY = 1 << 20 ;
+
+    /** most instructions a job may run: also the budget of a job that does NOT give one */
+    static final long DEFAULT_MAX_INSTRUCTIONS = 100_000_000L ;
+
+    /** largest program body */
+    static final int DEFAULT_MAX_UPLOAD = 4 * 1024 * 1024 ;
+
+    /** seconds a refused client should wait */
+    static final String RETRY_AFTER = "1" ;
+
+    static final String RESULT_MARK = "#RESULT" ;
+
+    /** the stop of a job whose run threw an exception: NOT one of {@link Sim68kEngine.Result.Stop} */
+    static final String ABORTED = "ABORTED" ;
+
+    /** connections the OS holds until they are accepted: a burst of jobs is refused with 503, NOT reset */
+    static final int ACCEPT_BACKLOG = 4096 ;
+
+    public static void main(final String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT ;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int queue = args.length > 1 ? Integer.parseInt(args[1]) : cores * DEFAULT_QUEUE_PER_CORE ;
+        Sim68kServer server = new Sim68kServer( port, cores, queue );
+        Runtime.getRuntime().addShutdownHook( new Thread(server::stop, "Sim68k-server-stop") );
+        server.start();
+        System.out.println( "Sim68kServer on http://" + server.http.getAddress().getHostString() + ":" + server.http.getAddress().getPort()
+                            + " : " + cores + " running, " + queue + " waiting, " + server.threads );
+    }
+
+    /**
+     * @param port on the loopback address; 0 = any free port
+     * @param running jobs simulated at the same time, e.g. the number of cores
+     * @param queue jobs that may wait for a running slot
+     * @throws IOException if the port can NOT be bound
+     */
+    Sim68kServer(final int port, final int running, final int queue) throws IOException {
+        if( running <= 0 || queue < 0 )
+            throw new IllegalArgumentException( "INVALID running = " + running + " OR queue = " + queue );
+        this.running = new Semaphore( running, true );
+        admitted = new Semaphore( running + queue );
+        slots = running ;
+        capacity = running + queue ;
+        maxMemory = Math.min( Integer.getInteger("sim68k.server.memory", DEFAULT_MAX_MEMORY), Sim68k.MAX_MEMORY_SIZE );
+        maxInstructions = Long.getLong( "sim68k.server.instructions", DEFAULT_MAX_INSTRUCTIONS );
+        maxUpload = Integer.getInteger( "sim68k.server.upload", DEFAULT_MAX_UPLOAD );
+
+        http = HttpServer.create( new InetSocketAddress(InetAddress.getLoopbackAddress(), port), ACCEPT_BACKLOG );
+        http.createContext( "/run", this::run );
+        http.createContext( "/status", this::status );
+        executor = newExecutor();
+        http.setExecutor( executor );
+    }
+
+    void start() { http.start(); }
+
+    /** refuse NEW jobs, give the running ones a second, then stop */
+    void stop() {
+        http.stop( 1 );
+        executor.shutdown();
+    }
+
+    /** @return the bound address, e.g. to find the port chosen for port 0 */
+    InetSocketAddress address() { return http.getAddress(); }
+
+    /**
+     *  A thread for EACH exchange: virtual where the JVM has them (Java 21+), found by reflection
+     *  so the simulator still builds and runs on Java 17
+     */
+    private ExecutorService newExecutor() {
+        try {
+            ExecutorService $exec = (ExecutorService)Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+            threads = "virtual threads";
+            return $exec;
+        }
+        catch( ReflectiveOperationException roe ) {
+            AtomicInteger $count = new AtomicInteger();
+            threads = "platform threads";
+            return Executors.newCachedThreadPool( r -> {
+                Thread $thread = new Thread( r, "Sim68k-job-" + $count.incrementAndGet() );
+                $thread.setDaemon( true );
+                return $thread;
+            } );
+        }
+    }
+
+    /*
+     *        J O B S
+     ************************************************************************************************************ */
+
+    /** POST /run */
+    private void run(final HttpExchange exch) throws IOException {
+        try( exch ) {
+            if( !"POST".equals(exch.getRequestMethod()) ) {
+                reply( exch, 405, "POST a program to /run" );
+                return;
+            }
+            if( !admitted.tryAcquire() ) {
+                rejected.incrementAndGet();
+                exch.getResponseHeaders().set( "Retry-After", RETRY_AFTER );
+                reply( exch, 503, "queue is full: " + capacity + " jobs" );
+                return;
+            }
+            try {
+                Job $job;
+                try {
+                    $job = new Job( exch );
+                }
+                catch( IllegalArgumentException ex ) {
+                    refuse( exch, ex );
+                    return;
+                }
+                running.acquire();
+                try {
+                    try {
+                        $job.load( exch );
+                    }
+                    catch( IllegalArgumentException | IOException ex ) {
+                        refuse( exch, ex );
+                        return;
+                    }
+                    if( $job.run(exch) )
+                        completed.incrementAndGet();
+                    else
+                        failed.incrementAndGet();
+                }
+                finally {
+                    running.release();
+                }
+            }
+            catch( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+            catch( UncheckedIOException uioe ) { // the client went away: its job is dropped
+                failed.incrementAndGet();
+            }
+            finally {
+                admitted.release();
+            }
+        }
+    }
+
+    /** a job that can NOT be run: 413 if over its quota, else 400 */
+    private void refuse(final HttpExchange exch, final Exception ex) throws IOException {
+        failed.incrementAndGet();
+        reply( exch, (ex instanceof QuotaException) ? 413 : 400, ex.getMessage() );
+    }
+
+    /**
+     *  ONE program with its input and quotas, on a NEW machine: NOTHING is shared with other jobs <br>
+     *  a waiting job holds ONLY its parameters: its upload is read and its machine built by {@link #load}
+     *  once it has a running slot
+     */
+    private final class Job {
+        /**
+         * Read the parameters
+         * @throws QuotaException if the job asks for more than its quota
+         * @throws IllegalArgumentException if a parameter is NOT valid
+         */
+        Job(final HttpExchange exch) {
+            Map<String, String> $params = query( exch.getRequestURI().getRawQuery() );
+            memory = (int)number( $params, "memory", Sim68k.DEFAULT_MEMORY_SIZE, maxMemory );
+            budget = number( $params, "budget", maxInstructions, maxInstructions );
+            String $input = $params.getOrDefault( "input", "" ).trim();
+            input = $input.isEmpty() ? new String[0] : $input.split( "[\\s,]+" );
+            name = $params.getOrDefault( "name", "program" );
+        }
+
+        /**
+         * Read the program, build the machine, WITHOUT the tools of the <em>-Dsim68k.*</em> properties, and load it
+         * @throws QuotaException if the program is larger than its quota
+         * @throws IllegalArgumentException if the program is NOT valid
+         * @throws IOException if the program can NOT be read
+         */
+        void load(final HttpExchange exch) throws IOException {
+            byte[] $body;
+            try( InputStream $in = exch.getRequestBody() ) {
+                $body = $in.readNBytes( maxUpload + 1 );
+            }
+            if( $body.length > maxUpload )
+                throw new QuotaException( "program is larger than " + maxUpload + " bytes" );
+            engine = new Sim68kEngine( null, memory, false );
+            engine.load( new ByteArrayInputStream($body), name );
+        }
+
+        private Sim68kEngine engine ;
+
+        private final int memory ;
+
+        private final String name ;
+
+        private final String[] input ;
+
+        private final long budget ;
+
+        /**
+         * Run within the budget, streaming the output as it is flushed, then send the Result <br>
+         * a run that throws is sent as <var>stop=ABORTED</var>, with the exception as its detail
+         * @return false if the run was aborted
+         */
+        boolean run(final HttpExchange exch) throws IOException {
+            exch.getResponseHeaders().set( "Content-Type", "text/plain; charset=utf-8" );
+            exch.sendResponseHeaders( 200, 0 );
+            OutputStream $out = exch.getResponseBody();
+            JobIO $io = new JobIO( input, $out );
+            engine.setIO( $io );
+            Sim68kEngine.Result $res;
+            try {
+                $res = engine.start( budget );
+            }
+            catch( UncheckedIOException uioe ) {
+                throw uioe;
+            }
+            catch( RuntimeException rex ) {
+                $io.flush();
+                $out.write( ("\n" + RESULT_MARK + "\nstop=" + ABORTED + "\ndetail=" + rex + "\n").getBytes(StandardCharsets.UTF_8) );
+                return false;
+            }
+            instructions.addAndGet( $res.instructions );
+
+            StringBuilder $text = new StringBuilder( 256 );
+            $text.append( '\n' ).append( RESULT_MARK ).append( '\n' )
+                 .append( "stop=" ).append( $res.stop ).append( '\n' )
+                 .append( "detail=" ).append( $res.detail ).append( '\n' );
+            if( $res.error != null )
+                $text.append( "error=" ).append( $res.error.code() ).append( '\n' );
+            $text.append( "PC=" ).append( Sim68k.intHex($res.pc) ).append( '\n' )
+                 .append( "D0=" ).append( Sim68k.intHex(engine.getD(0)) ).append( '\n' )
+                 .append( "D1=" ).append( Sim68k.intHex(engine.getD(1)) ).append( '\n' )
+                 .append( "A0=" ).append( Sim68k.intHex(engine.getA(0)) ).append( '\n' )
+                 .append( "A1=" ).append( Sim68k.intHex(engine.getA(1)) ).append( '\n' )
+                 .append( "CCR=" ).append( engine.getCCR() ).append( '\n' )
+                 .append( "instructions=" ).append( $res.instructions ).append( '\n' )
+                 .append( "cycles=" ).append( $res.cycles ).append( '\n' )
+                 .append( "nanos=" ).append( $res.nanos ).append( '\n' );
+            $out.write( $text.toString().getBytes(StandardCharsets.UTF_8) );
+            return true;
+        }
+    }
+
+    /**
+     *  Input words of the job; each batch of output is written to the response as it is flushed <br>
+     *  a client that went away stops the job with an {@link UncheckedIOException}
+     */
+    private static final class JobIO extends BufferedIO {
+        JobIO(final String[] input, final OutputStream out) {
+            words = input;
+            this.out = out;
+        }
+
+        private final String[] words ;
+
+        private int posn ;
+
+        private final OutputStream out ;
+
+        @Override
+        public String next() {
+            if( posn >= words.length )
+                throw new NoSuchElementException( "NO more input" );
+            return words[posn++];
+        }
+
+        @Override
+        protected void write(final CharSequence chars) {
+            try {
+                out.write( chars.toString().getBytes(StandardCharsets.UTF_8) );
+                out.flush();
+            }
+            catch( IOException ioe ) {
+                throw new UncheckedIOException( ioe );
+            }
+        }
+    }
+
+    /** a job asked for more than its quota */
+    private static final class QuotaException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        QuotaException(final String msg) { super( msg ); }
+    }
+
+    /*
+     *        S T A T U S
+     ************************************************************************************************************ */
+
+    /** GET /status */
+    private void status(final HttpExchange exch) throws IOException {
+        try( exch ) {
+            int $running = slots - running.availablePermits(), $admitted = capacity - admitted.availablePermits() ;
+            reply( exch, 200, "threads=" + threads
+                              + "\nrunning=" + $running
+                              + "\nwaiting=" + Math.max( 0, $admitted - $running )
+                              + "\nslots=" + slots
+                              + "\ncapacity=" + capacity
+                              + "\ncompleted=" + completed.get()
+                              + "\nfailed=" + failed.get()
+                              + "\nrejected=" + rejected.get()
+                              + "\ninstructions=" + instructions.get()
+                              + "\nmaxMemory=" + maxMemory
+                              + "\nmaxInstructions=" + maxInstructions + "\n" );
+        }
+    }
+
+    /*
+     *        H T T P
+     ************************************************************************************************************ */
+
+    private static void reply(final HttpExchange exch, final int code, final String text) throws IOException {
+        byte[] $bytes = (text + "\n").getBytes( StandardCharsets.UTF_8 );
+        exch.getResponseHeaders().set( "Content-Type", "text/plain; charset=utf-8" );
+        exch.sendResponseHeaders( code, $bytes.length );
+        exch.getResponseBody().write( $bytes );
+    }
+
+    /** @return the parameters of a raw query, decoded */
+    private static Map<String, String> query(final String raw) {
+        Map<String, String> $params = new HashMap<>();
+        if( raw == null )
+            return $params;
+        for( String $pair : raw.split("&") ) {
+            int $eq = $pair.indexOf( '=' );
+            String $key = URLDecoder.decode( $eq < 0 ? $pair : $pair.substring(0, $eq), StandardCharsets.UTF_8 );
+            $params.put( $key, $eq < 0 ? "" : URLDecoder.decode($pair.substring($eq + 1), StandardCharsets.UTF_8) );
+        }
+        return $params;
+    }
+
+    /**
+     * @return the number in params under key, OR dflt if NOT there
+     * @throws QuotaException if it is above max
+     * @throws IllegalArgumentException if it is NOT a number > 0
+     */
+    private static long number(final Map<String, String> params, final String key, final long dflt, final long max) {
+        String $value = params.get( key );
+        if( $value == null )
+            return dflt;
+        long $num;
+        try {
+            $num = Long.parseLong( $value.trim() );
+        }
+        catch( NumberFormatException nfe ) {
+            throw new IllegalArgumentException( "INVALID " + key + " = " + $value );
+        }
+        if( $num <= 0 )
+            throw new IllegalArgumentException( "INVALID " + key + " = " + $value );
+        if( $num > max )
+            throw new QuotaException( key + " = " + $num + " is over the quota of " + max );
+        return $num;
+    }
+
+    /*
+     *        F I E L D S
+     ************************************************************************************************************ */
+
+    private final HttpServer http ;
+
+    private final ExecutorService executor ;
+
+    /** kind of threads the jobs run on */
+    private String threads ;
+
+    /** a permit for EACH job simulating now */
+    private final Semaphore running ;
+
+    /** a permit for EACH job simulating OR waiting: the bounded admission queue */
+    private final Semaphore admitted ;
+
+    /** jobs simulating at most */
+    private final int slots ;
+
+    /** jobs simulating OR waiting at most */
+    private final int capacity ;
+
+    /** quotas of a job */
+    private final int maxMemory, maxUpload ;
+
+    private final long maxInstructions ;
+
+    private final AtomicLong completed = new AtomicLong(), failed = new AtomicLong(), rejected = new AtomicLong(),
+                             instructions = new AtomicLong();
+}
@@ -0,0 +1,40 @@
+/* ******************************************************************************
+ *
+ * SimIO.java
+ *
+ * The I/O device used by INP, DSP and DSR
+ *  - console, scripted input, file input or in-memory output:
+ *    ConsoleIO, ScriptedIO, FileIO and MemoryIO, all BufferedIO
+ *
+ ********************************************************************************/
+
+import java.util.NoSuchElementException;
+
+
+/**
+ *  The I/O device of the simulator <br>
+ *  - output may be buffered, so it is only certain to appear after {@link #flush()}
+ */
+interface SimIO extends AutoCloseable {
+    /**
+     * @return the next word of input
+     * @throws NoSuchElementException if there is NO more input
+     */
+    String next();
+
+    /** @param text to output */
+    void print(final String text);
+
+    /** @param text to output, followed by a newline */
+    default void println(final String text) {
+        print(text);
+        print("\n");
+    }
+
+    /** send ALL the buffered output */
+    void flush();
+
+    /** send ALL the buffered output and release the device: it can NOT be used after this */
+    @Override
+    default void close() { flush(); }
+}
@@ -0,0 +1,290 @@
+/* ******************************************************************************
+ *
+ * SimMetrics.java
+ *
+ * Live metrics of Sim68k for JMX
+ *  - each Processor counts in its OWN plain fields, so the hot path has NO shared writes
+ *  - the counts are added to LongAdders of the JVM every FLUSH_INSTRUCTIONS instructions and at the end of each run
+ *  - registered as 'Sim68k:type=Metrics' in the platform MBeanServer, e.g. for jconsole
+ *
+ *  Turn on with -Dsim68k.jmx=true, OR Processor.enableMetrics()
+ *
+ ********************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ *  Totals of ALL the simulators of the JVM with metrics on; ONE instance, see {@link #get()}
+ */
+class SimMetrics implements SimMetricsMXBean {
+    static final String OBJECT_NAME = "Sim68k:type=Metrics" ;
+
+    /** a running Processor adds its counts to the totals at least this often */
+    static final long FLUSH_INSTRUCTIONS = 1L << 20 ;
+
+    /** {@link #getCurrentMips()} and the flushes use the same interval for samples closer than this */
+    static final long MIN_SAMPLE_NANOS = 100_000_000L ;
+
+    /** halt cause of a run that ended with an exception */
+    static final String ABORTED = "ABORTED" ;
+
+    private static final String[] MNEMO = Sim68k.MnemoInit();
+
+    private SimMetrics() {
+        for( int i = 0; i < opCounts.length; i++ )
+            opCounts[i] = new LongAdder();
+        halts.put( MNEMO[Sim68k.iHLT], new LongAdder() );
+        for( Sim68k.SimError $err : Sim68k.SimError.values() )
+            halts.put( $err.code() + " " + $err.name(), new LongAdder() );
+        halts.put( ABORTED, new LongAdder() );
+        lastSampleNanos = System.nanoTime();
+    }
+
+    private static SimMetrics instance ;
+
+    /** @return the totals, registered with the platform MBeanServer on the first call */
+    static synchronized SimMetrics get() {
+        if( instance == null ) {
+            instance = new SimMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean( instance, new ObjectName(OBJECT_NAME) );
+            }
+            catch( JMException jme ) {
+                Logger.getLogger( SimMetrics.class.getName() ).log( Level.WARNING, "could NOT register " + OBJECT_NAME, jme );
+            }
+        }
+        return instance;
+    }
+
+    /*
+     *        O N E   P R O C E S S O R
+     ************************************************************************************************************ */
+
+    /**
+     * @param sim machine of the Processor
+     * @param cpu the Processor
+     * @return the counts of ONE Processor; its log levels are then the ones set by JMX
+     */
+    Cpu attach(final Sim68k sim, final Sim68k.Processor cpu) {
+        if( sim.logControl != null )
+            logControl = sim.logControl;
+        return new Cpu( sim, cpu );
+    }
+
+    /**
+     *  Counts of ONE Processor, changed ONLY by the thread running it
+     */
+    final class Cpu {
+        private Cpu(final Sim68k sim, final Sim68k.Processor cpu) {
+            this.sim = sim;
+            this.cpu = cpu;
+        }
+
+        private final Sim68k sim ;
+
+        private final Sim68k.Processor cpu ;
+
+        /** instructions for each opId, NOT yet in the totals */
+        private final long[] ops = new long[ opCounts.length ];
+
+        /** values of the Processor and Memory counters at the last flush */
+        private long instructionsDone, cyclesDone, readsDone, writesDone ;
+
+        /** instruction count of the next flush */
+        private long flushAt ;
+
+        /** called at the start of each run: the counters of the Processor go on from the last run of the program */
+        void begin() {
+            instructionsDone = cpu.instructions;
+            cyclesDone = cpu.cycles;
+            readsDone = cpu.memoryReads();
+            writesDone = cpu.memoryWrites();
+            flushAt = instructionsDone + FLUSH_INSTRUCTIONS;
+            runs.increment();
+            running.incrementAndGet();
+        }
+
+        /** the first n steps of blk were run */
+        void ran(final Sim68k.Block blk, final int n) {
+            for( int i = 0; i < n; i++ )
+                ops[ blk.opIds[i] ]++ ;
+            if( cpu.instructions >= flushAt )
+                flush();
+        }
+
+        /** ONE instruction was run */
+        void ran(final byte opId) {
+            ops[opId]++ ;
+            if( cpu.instructions >= flushAt )
+                flush();
+        }
+
+        /** @param nanos waited for ONE value of INP */
+        void inputWait(final long nanos) {
+            inputWaits.increment();
+            inputNanos.add( nanos );
+        }
+
+        /**
+         * Called at the end of each run
+         * @param paused true if the debugger stopped the run, which will be resumed
+         */
+        void end(final boolean paused) {
+            flush();
+            running.decrementAndGet();
+            if( paused )
+                return;
+            String $cause = (sim.error != null) ? sim.error.code() + " " + sim.error.name()
+                            : sim.H ? MNEMO[Sim68k.iHLT] : ABORTED ;
+            halts.get( $cause ).increment();
+        }
+
+        /** add the counts since the last flush to the totals */
+        private void flush() {
+            instructions.add( cpu.instructions - instructionsDone );
+            cycles.add( cpu.cycles - cyclesDone );
+            reads.add( cpu.memoryReads() - readsDone );
+            writes.add( cpu.memoryWrites() - writesDone );
+            instructionsDone = cpu.instructions;
+            cyclesDone = cpu.cycles;
+            readsDone = cpu.memoryReads();
+            writesDone = cpu.memoryWrites();
+            for( int i = 0; i < ops.length; i++ ) {
+                if( ops[i] != 0 ) {
+                    opCounts[i].add( ops[i] );
+                    ops[i] = 0;
+                }
+            }
+            flushAt = instructionsDone + FLUSH_INSTRUCTIONS;
+            sample();
+        }
+    }
+
+    /*
+     *        M X B E A N
+     ************************************************************************************************************ */
+
+    @Override
+    public long getInstructions() { return instructions.sum(); }
+
+    @Override
+    public long getCycles() { return cycles.sum(); }
+
+    @Override
+    public long getMemoryReads() { return reads.sum(); }
+
+    @Override
+    public long getMemoryWrites() { return writes.sum(); }
+
+    @Override
+    public long getInputWaits() { return inputWaits.sum(); }
+
+    @Override
+    public long getInputWaitMillis() { return inputNanos.sum() / 1_000_000L; }
+
+    @Override
+    public long getRuns() { return runs.sum(); }
+
+    @Override
+    public int getRunning() { return running.get(); }
+
+    @Override
+    public synchronized double getCurrentMips() {
+        sample();
+        return currentMips;
+    }
+
+    /**
+     * Measure the MIPS since the last sample, if it is old enough: called by each flush of the counts,
+     * so the peak does NOT depend on how often a JMX client polls
+     */
+    private synchronized void sample() {
+        long $now = System.nanoTime();
+        if( $now - lastSampleNanos >= MIN_SAMPLE_NANOS ) {
+            long $count = instructions.sum();
+            currentMips = ($count - lastSampleCount) * 1e3 / ($now - lastSampleNanos);
+            peakMips = Math.max( peakMips, currentMips );
+            lastSampleNanos = $now;
+            lastSampleCount = $count;
+        }
+    }
+
+    @Override
+    public synchronized double getPeakMips() { return peakMips; }
+
+    @Override
+    public Map<String, Long> getHalts() {
+        Map<String, Long> $map = new LinkedHashMap<>();
+        halts.forEach( (k, v) -> $map.put(k, v.sum()) );
+        return $map;
+    }
+
+    @Override
+    public Map<String, Long> getInstructionCounts() {
+        Map<String, Long> $map = new LinkedHashMap<>();
+        for( int i = 0; i < opCounts.length; i++ )
+            $map.put( MNEMO[i], opCounts[i].sum() );
+        return $map;
+    }
+
+    @Override
+    public String getConsoleLevel() { return logControl == null ? null : logControl.getConsoleLevel().getName(); }
+
+    @Override
+    public void setConsoleLevel(final String level) { logControl().setConsoleLevel( Level.parse(level) ); }
+
+    @Override
+    public String getFileLevel() { return logControl == null ? null : logControl.getFileLevel().getName(); }
+
+    @Override
+    public void setFileLevel(final String level) { logControl().setFileLevel( Level.parse(level) ); }
+
+    private LogControl logControl() {
+        if( logControl == null )
+            throw new IllegalStateException( "NO simulator is logging yet" );
+        return logControl;
+    }
+
+    @Override
+    public synchronized void reset() {
+        for( LongAdder $a : new LongAdder[] {instructions, cycles, reads, writes, inputWaits, inputNanos, runs} )
+            $a.reset();
+        for( LongAdder $a : opCounts )
+            $a.reset();
+        halts.values().forEach( LongAdder::reset );
+        currentMips = peakMips = 0.0;
+        lastSampleNanos = System.nanoTime();
+        lastSampleCount = 0;
+    }
+
+    /*
+     *        F I E L D S
+     ************************************************************************************************************ */
+
+    private final LongAdder instructions = new LongAdder(), cycles = new LongAdder(),
+                            reads = new LongAdder(), writes = new LongAdder(),
+                            inputWaits = new LongAdder(), inputNanos = new LongAdder(), runs = new LongAdder();
+
+    private final LongAdder[] opCounts = new LongAdder[ Sim68k.iHLT + 1 ];
+
+    /** by cause, in a fixed order */
+    private final Map<String, LongAdder> halts = new LinkedHashMap<>();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    /** levels set through JMX go to the LogControl of the last simulator attached */
+    private volatile LogControl logControl ;
+
+    private long lastSampleNanos, lastSampleCount ;
+
+    private double currentMips, peakMips ;
+}
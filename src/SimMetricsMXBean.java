@@ -0,0 +1,72 @@
+/* ******************************************************************************
+ *
+ * SimMetricsMXBean.java
+ *
+ * Management interface of the Sim68k metrics, see SimMetrics
+ *
+ ********************************************************************************/
+
+import java.util.Map;
+
+
+/**
+ *  Totals of ALL the simulators of this JVM with metrics on, as <var>Sim68k:type=Metrics</var> <br>
+ *  plus the log levels of the simulators, which can be changed while they run <br>
+ *  <em>public</em> as required by JMX
+ */
+public interface SimMetricsMXBean {
+    /** @return instructions executed */
+    long getInstructions();
+
+    /** @return simulated 68000 clock cycles */
+    long getCycles();
+
+    /** @return operand reads of Memory */
+    long getMemoryReads();
+
+    /** @return operand writes of Memory */
+    long getMemoryWrites();
+
+    /** @return values read by INP */
+    long getInputWaits();
+
+    /** @return time spent waiting for the input of INP */
+    long getInputWaitMillis();
+
+    /** @return runs started */
+    long getRuns();
+
+    /** @return simulators running now */
+    int getRunning();
+
+    /**
+     * @return millions of instructions per second between the last two samples: a sample is taken by this call
+     *         OR a flush of the counts, if at least {@link SimMetrics#MIN_SAMPLE_NANOS} after the one before,
+     *         so after an idle time the samples may be much further apart
+     */
+    double getCurrentMips();
+
+    /** @return highest {@link #getCurrentMips()} so far */
+    double getPeakMips();
+
+    /** @return runs ended by each cause: HLT, ABORTED OR a {@link Sim68k.SimError} */
+    Map<String, Long> getHalts();
+
+    /** @return instructions executed for each Mnemo */
+    Map<String, Long> getInstructionCounts();
+
+    /** @return name of the console log Level */
+    String getConsoleLevel();
+
+    /** @param level name of the NEW console log Level, e.g. INFO */
+    void setConsoleLevel(String level);
+
+    /** @return name of the file log Level */
+    String getFileLevel();
+
+    /** @param level name of the NEW file log Level, e.g. FINE */
+    void setFileLevel(String level);
+
+    /** set ALL the counts to 0 */
+    void reset();
+}
@@ -0,0 +1,311 @@
+/* ******************************************************************************
+ *
+ * Tracer.java
+ *
+ * Binary instruction trace for Sim68k
+ *  - fixed-size entries in a preallocated ring buffer, with optional 1-in-N sampling
+ *  - spill to a memory-mapped file for a complete history of a long run,
+ *    OR write only the last entries of the ring buffer when the run ends
+ *  - offline decoder to text
+ *
+ *  Turn on with -Dsim68k.trace=<trace file> [-Dsim68k.trace.sample=N] [-Dsim68k.trace.entries=N]
+ *               [-Dsim68k.trace.ring=true]
+ *  Decode from the project folder:
+ *    java -cp out Tracer <trace file>
+ *
+ ********************************************************************************/
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ *  Record each executed instruction as a fixed-size binary entry <br>
+ *  <pre>
+ *   offset  size
+ *      0     8   sequence number of the instruction in the run
+ *      8     2   PC
+ *     10     2   OpCode
+ *     12     2   operand address 1
+ *     14     2   operand address 2
+ *     16     4   D0 after the instruction
+ *     20     4   D1
+ *     24     2   A0
+ *     26     2   A1
+ *     28     1   status bits: H N Z V C = bits 4..0
+ *     29     1   registers changed by the instruction: D0 D1 A0 A1 = bits 0..3
+ *     30     2   unused
+ *  </pre>
+ *  A trace file is a 16 byte header, then the entries, oldest first
+ */
+class Tracer {
+    /**
+     * @param entries size of the ring buffer
+     * @param sampleEvery record 1 instruction in this many; 1 = ALL
+     * @param file the trace of each run
+     * @param spill true = keep EVERY recorded entry in <var>file</var>;
+     *              false = keep only the last <var>entries</var>, written to <var>file</var> when the run ends
+     */
+    Tracer(final int entries, final int sampleEvery, final Path file, final boolean spill) {
+        if( entries <= 0 || sampleEvery <= 0 || file == null )
+            throw new IllegalArgumentException( "INVALID trace entries = " + entries + ", sample = " + sampleEvery
+                                                + " or file = " + file );
+        ring = ByteBuffer.allocateDirect( entries * ENTRY_SIZE ).order( ByteOrder.BIG_ENDIAN );
+        this.sampleEvery = sampleEvery;
+        this.file = file;
+        this.spill = spill;
+    }
+
+    /*
+     *        F O R M A T
+     ************************************************************************************************************ */
+
+    /** 'S68T' */
+    static final int MAGIC = 0x53363854 ;
+
+    static final short VERSION = 1 ;
+
+    static final int HEADER_SIZE = 16 ,
+                     ENTRY_SIZE = 32 ;
+
+    /** default size of the ring buffer */
+    static final int DEFAULT_ENTRIES = 64 * 1024 ;
+
+    /** status bits in an entry */
+    static final int H_BIT = 0x10, N_BIT = 0x08, Z_BIT = 0x04, V_BIT = 0x02, C_BIT = 0x01 ;
+
+    /*
+     *        R E C O R D I N G
+     ************************************************************************************************************ */
+
+    private final ByteBuffer ring ;
+
+    private final int sampleEvery ;
+
+    private final Path file ;
+
+    /** false if ONLY the ring buffer is kept */
+    private final boolean spill ;
+
+    /** open while spilling */
+    private FileChannel spillChannel ;
+
+    /** bytes of entries written to {@link #spillChannel} */
+    private long spilled ;
+
+    /** instructions seen in this run */
+    private long sequence ;
+
+    /** instructions to skip before the next one is recorded */
+    private int skip ;
+
+    /** true once the ring buffer has been filled, so the oldest entry is at the current position */
+    private boolean wrapped ;
+
+    /** why spilling stopped, OR <em>null</em> */
+    private IOException problem ;
+
+    /** registers before the instruction */
+    private int d0, d1 ;
+    private short a0, a1 ;
+
+    /**
+     * Start the trace of a new run
+     * @throws IOException if the spill file can NOT be created
+     */
+    void begin() throws IOException {
+        ring.clear();
+        sequence = 0;
+        skip = 0;
+        wrapped = false;
+        problem = null;
+        if( spill ) {
+            close();
+            spillChannel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+            spillChannel.write( header(), 0 );
+            spilled = 0;
+        }
+    }
+
+    /**
+     * Called BEFORE each instruction executes, to find which registers it changes
+     * @return true if this instruction will be recorded
+     */
+    boolean before(final int[] dr, final short[] ar) {
+        if( skip > 0 ) {
+            skip-- ;
+            sequence++ ;
+            return false;
+        }
+        d0 = dr[0]; d1 = dr[1];
+        a0 = ar[0]; a1 = ar[1];
+        return true;
+    }
+
+    /**
+     * Record an instruction, AFTER it executes, if {@link #before} returned true
+     * @param status bits, see {@link #H_BIT} etc.
+     */
+    void record(final short pc, final short opCode, final short opAddr1, final short opAddr2,
+                final int[] dr, final short[] ar, final int status) {
+        if( !ring.hasRemaining() ) {
+            if( spillChannel != null )
+                spillRing();
+            if( ring.position() > 0 ) { // NOT spilling
+                ring.clear();
+                wrapped = true;
+            }
+        }
+        int $changed = (dr[0] != d0 ? 1 : 0) | (dr[1] != d1 ? 2 : 0) | (ar[0] != a0 ? 4 : 0) | (ar[1] != a1 ? 8 : 0) ;
+        ring.putLong( sequence++ ).putShort( pc ).putShort( opCode ).putShort( opAddr1 ).putShort( opAddr2 )
+            .putInt( dr[0] ).putInt( dr[1] ).putShort( ar[0] ).putShort( ar[1] )
+            .put( (byte)status ).put( (byte)$changed ).putShort( (short)0 );
+        skip = sampleEvery - 1;
+    }
+
+    /**
+     * Copy the full part of the ring buffer to a new mapped region at the end of the spill file <br>
+     * - if that fails, keep the problem for {@link #finish()} and go on with ONLY the ring buffer
+     */
+    private void spillRing() {
+        try {
+            ring.flip();
+            MappedByteBuffer $map = spillChannel.map( FileChannel.MapMode.READ_WRITE, HEADER_SIZE + spilled, ring.remaining() );
+            spilled += ring.remaining();
+            $map.put( ring );
+            ring.clear();
+        }
+        catch( IOException ioe ) {
+            problem = ioe;
+            ring.position( ring.limit() ).limit( ring.capacity() );
+            try {
+                close();
+            }
+            catch( IOException ignore ) { }
+        }
+    }
+
+    /**
+     * End the trace of a run, at a Halt, an error OR a stop of the debugger: spill the rest of the ring buffer
+     * and close the file, OR write the ring buffer to the file if NOT spilling
+     * @throws IOException if the file could NOT be written, at ANY time during the run
+     */
+    void finish() throws IOException {
+        if( spillChannel != null && ring.position() > 0 )
+            spillRing();
+        close();
+        if( !spill )
+            dump( file );
+        if( problem != null )
+            throw problem;
+    }
+
+    private void close() throws IOException {
+        if( spillChannel != null ) {
+            spillChannel.close();
+            spillChannel = null;
+        }
+    }
+
+    /**
+     * Write the entries in the ring buffer, oldest first, as a trace file
+     * @param file to create or replace
+     * @throws IOException if the file can NOT be written
+     */
+    void dump(final Path file) throws IOException {
+        try( FileChannel $chnl = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING) ) {
+            $chnl.write( header() );
+            ByteBuffer $all = ring.duplicate();
+            if( wrapped ) {
+                $all.limit( $all.capacity() );
+                $chnl.write( $all.slice(ring.position(), $all.capacity() - ring.position()) );
+            }
+            $chnl.write( $all.slice(0, ring.position()) );
+        }
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer $hdr = ByteBuffer.allocate( HEADER_SIZE ).order( ByteOrder.BIG_ENDIAN );
+        $hdr.putInt( MAGIC ).putShort( VERSION ).putShort( (short)ENTRY_SIZE ).putInt( sampleEvery ).putInt( 0 );
+        return $hdr.flip();
+    }
+
+    /*
+     *        D E C O D I N G
+     ************************************************************************************************************ */
+
+    /**
+     * Render a trace file as text, one line per entry
+     * @param file the trace
+     * @param out for the text
+     * @return number of entries
+     * @throws IOException if the file can NOT be read OR is NOT a trace
+     */
+    static long decode(final Path file, final PrintStream out) throws IOException {
+        String[] $mnemo = Sim68k.MnemoInit();
+        try( FileChannel $chnl = FileChannel.open(file, StandardOpenOption.READ) ) {
+            ByteBuffer $buf = $chnl.map( FileChannel.MapMode.READ_ONLY, 0, $chnl.size() ).order( ByteOrder.BIG_ENDIAN );
+            if( $buf.limit() < HEADER_SIZE || $buf.getInt(0) != MAGIC )
+                throw new IOException( file + " is NOT a trace file" );
+            if( $buf.getShort(4) != VERSION || $buf.getShort(6) != ENTRY_SIZE )
+                throw new IOException( "UNKNOWN version or entry size in trace file " + file );
+            out.println( "trace of 1 in " + $buf.getInt(8) + " instructions" );
+            long $count = 0;
+            for( int p = HEADER_SIZE; p + ENTRY_SIZE <= $buf.limit(); p += ENTRY_SIZE, $count++ ) {
+                short $opCode = $buf.getShort(p + 10);
+                int $status = $buf.get(p + 28), $changed = $buf.get(p + 29);
+                out.printf( "#%-10d PC=%-6s %-6s %-7s @1=%-6s @2=%-6s D0=%-10s D1=%-10s A0=%-6s A1=%-6s %s%s%n",
+                            $buf.getLong(p), Sim68k.intHex($buf.getShort(p + 8) & 0xFFFF),
+                            $mnemo[($opCode >> 11) & 0x1F], Sim68k.intHex($opCode & 0xFFFF),
+                            Sim68k.intHex($buf.getShort(p + 12) & 0xFFFF), Sim68k.intHex($buf.getShort(p + 14) & 0xFFFF),
+                            Sim68k.intHex($buf.getInt(p + 16)), Sim68k.intHex($buf.getInt(p + 20)),
+                            Sim68k.intHex($buf.getShort(p + 24) & 0xFFFF), Sim68k.intHex($buf.getShort(p + 26) & 0xFFFF),
+                            flags($status), changed($changed) );
+            }
+            return $count;
+        }
+    }
+
+    /** @return the status bits as e.g. "-N-V-" */
+    private static String flags(final int status) {
+        return "" + ((status & H_BIT) != 0 ? 'H' : '-') + ((status & N_BIT) != 0 ? 'N' : '-')
+               + ((status & Z_BIT) != 0 ? 'Z' : '-') + ((status & V_BIT) != 0 ? 'V' : '-') + ((status & C_BIT) != 0 ? 'C' : '-');
+    }
+
+    /** @return names of the changed registers, e.g. " changed: D0 A1" */
+    private static String changed(final int mask) {
+        if( mask == 0 )
+            return "";
+        StringBuilder $sb = new StringBuilder( " changed:" );
+        String[] $names = { "D0", "D1", "A0", "A1" };
+        for( int i = 0; i < $names.length; i++ )
+            if( (mask & (1 << i)) != 0 )
+                $sb.append( ' ' ).append( $names[i] );
+        return $sb.toString();
+    }
+
+    /*
+     *  MAIN
+     ********************************************************************************************* */
+    public static void main(final String[] args) {
+        if( args.length < 1 ) {
+            System.err.println( "usage: Tracer <trace file>" );
+            System.exit( 2 );
+        }
+        try {
+            decode( Path.of(args[0]), System.out );
+        }
+        catch( IOException ioe ) {
+            System.err.println( "PROBLEM decoding " + args[0] + ": " + ioe.getMessage() );
+            System.exit( 1 );
+        }
+    }
+}